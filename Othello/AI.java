@@ -1,110 +1,834 @@
-/* 
+/*
  * AI.java
- * 
- * This class contains the methods to make the game bot work. 
- * The bot uses the minimax search algorithm with alpha-beta pruning with a custom evaluator to find the best move. 
- * The evaluation of each position are based on: 
+ *
+ * This class contains the methods to make the game bot work.
+ * The bot uses the minimax search algorithm (in its negamax form) with alpha-beta pruning,
+ * principal variation search and aspiration windows with a custom evaluator to find the best move.
+ * The evaluation of each position are based on:
  * how many more pieces the player has over the opponent and
  * how favorable the player's piece positions are compared with the opponent
+ * The search works on packed boards (see PackedBoard) of any size from 6x6 to 16x16,
+ * with one reusable board per ply, so searching a node copies one small array and allocates nothing.
+ * In deterministic mode (see setDeterministic) a search gives the same move, score and node count every time:
+ * the transposition table starts empty, nothing is pondered, and root moves with the same score are told apart
+ * by a seeded rank instead of by the order they were searched in.
  */
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
-public class AI {
+public class AI implements Engine {
 
     private final static int NUMPLAYER = 2; // Number of players
-    private final static int NUMROW = 8; // Number of rows on the board
-    private final static int NUMCOL = 8; // Number of columns on the board
-    private final static int AREA = NUMROW*NUMCOL; // Area of the board
 
     private final static int INDICATOR = -2; // Represents valid-move indicator
     private final static int EMPTY = -1; // Represents an empty slot
     private final static int PLAYER1 = 0; // Represents player 1
     private final static int PLAYER2 = 1; // Represents player 2
 
-    static int nodesExplored = 0; // Keeps track of nodes explored for testing purposes
-    static int maximizingPlayer; // The player to make the move
-    static int nonMaximizingPlayer; // The other player
+    private final static int INFINITY = 1000000; // Bigger than any evaluation, safe to negate
+    private final static int ASPIRATIONWINDOW = 8; // Half-width of the aspiration window around the previous iteration's score
+
+    private final static String PROBCUTFILE = "probcut.txt"; // The fitted Multi-ProbCut parameters
+    private final static int PROBCUTSIZE = 8; // The size of board the Multi-ProbCut parameters were fitted on
+    private final static int PROBCUTMINDEPTH = 3; // Shallowest depth at which Multi-ProbCut is tried
+    private final static int NUMSTAGES = 4; // Number of game stages with their own Multi-ProbCut parameters
+    private final static double PROBCUTTHRESHOLD = 1.5; // How many standard deviations a cut needs to be certain by
+    private final static int NOCUT = Integer.MIN_VALUE; // Returned by probCut when the node could not be cut
+
+    private final static int DEFAULTTABLEBITS = 20; // The transposition table has 2 to the power of this many slots by default
+    private final static int PREDICTIONDEPTH = 2; // Depth of the search that predicts the opponent's reply when pondering
+    // Weights of the evaluation features in the middle of each game stage (see stage); in between, the
+    // weights are interpolated by the number of pieces on the board (see stageWeights)
+    private final static int[] PIECEWEIGHT = {1, 1, 1, 1}; // Per piece
+    private final static int[] VALUEWEIGHT = {3, 2, 2, 1}; // Per point of additional value
+    private final static int[] STABLEWEIGHT = {4, 3, 2, 1}; // Per stable piece, 8x8 only
+    private final static int[] MOBILITYWEIGHT = {3, 2, 1, 0}; // Per move that outflanks, 8x8 only
+    private final static int[] POTENTIALWEIGHT = {1, 1, 0, 0}; // Per empty slot next to an enemy piece, 8x8 only
+    private final static int[] FRONTIERWEIGHT = {-1, -1, 0, 0}; // Per piece next to an empty slot, 8x8 only
+    private final static int[][] FEATUREWEIGHTS = {PIECEWEIGHT, VALUEWEIGHT, STABLEWEIGHT, MOBILITYWEIGHT, POTENTIALWEIGHT, FRONTIERWEIGHT};
+    // The position of each feature in FEATUREWEIGHTS and in a row of weights
+    private final static int PIECES = 0;
+    private final static int VALUES = 1;
+    private final static int STABLE = 2;
+    private final static int MOBILITY = 3;
+    private final static int POTENTIAL = 4;
+    private final static int FRONTIER = 5;
+    private final static int WEIGHTSCALE = 16; // Interpolated weights are kept as integers in sixteenths
+
+    private final static long FULL = -1L; // Every slot of the 8x8 board
+
+    // The steps of the eight directions from a slot, for boardAfterMove: right, left, down, up and the diagonals
+    private final static int[] ROWSTEPS = {0, 0, 1, -1, -1, -1, 1, 1};
+    private final static int[] COLSTEPS = {1, -1, 0, 0, -1, 1, -1, 1};
+
+    private final static int DEFAULTQUIESCENCE = 4; // Most plies the quiescence search may go past the horizon by default
+
+    private final static int ANALYSISINTERVAL = 50; // Least milliseconds between two analysis snapshots within an iteration
+
+    // Random numbers for hashing boards of more than 64 slots: two independent hashes of the player to move's
+    // pieces and two of the other player's, for every slot
+    private final static long[][] ZOBRIST = new long[4][PackedBoard.MAXSIZE * PackedBoard.MAXSIZE];
+    static {
+        Random random = new Random(20170601);
+        for (long[] keys : ZOBRIST) {
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = random.nextLong();
+            }
+        }
+    }
+
+    static double[][][] probCutTable; // {shallow depth, a, b, sigma} for each depth and game stage, null if none was fitted
+
+    private int nodesExplored = 0; // Keeps track of nodes explored for testing purposes
+    private boolean probCut = false; // Whether Multi-ProbCut selective pruning is turned on
+    private int rootBestMove; // The index of the best move found by the last call to searchRoot
+    private int completedDepth; // The deepest iteration of the last search that finished
+    private int completedScore; // The score of the best move of the deepest iteration that finished
+    private volatile boolean stopped; // Set by stop() to end the search early
+    private SearchStats stats = new SearchStats(0, 0, 0); // Statistics of the last search
+    private int tableBits = DEFAULTTABLEBITS; // Size of the transposition table
+    private int quiescenceDepth = DEFAULTQUIESCENCE; // Most plies of quiescence search past the horizon, 0 for none
+    private TranspositionTable table; // Results of earlier searches, created by the first search
+    private Executor executor = BackgroundTask.OWNTHREAD; // Runs the pondering
+    private BackgroundTask ponderTask; // The search on the opponent's time, null if not pondering
+    private boolean deterministic; // Whether every search starts from an empty table and breaks ties by tieRank
+    private long seed; // The seed of tieRank in deterministic mode
+    private PrintWriter trace; // Where every root move searched is logged, null for no trace
+
+    // The analysis of the running search, for display
+    private final AtomicReference < SearchAnalysis > analysis = new AtomicReference < SearchAnalysis > (); // The latest snapshot
+    private boolean publishing; // Whether snapshots are published: only for search, not for pondering
+    private long searchStart; // When the search started
+    private long lastPublished; // When the latest snapshot was published
+    private int[] rootScores; // The score of each root move at the current depth
+    private boolean[] rootExact; // Whether each root score is exact
+    private boolean[] rootSearched; // Whether each root move has been searched at the current depth
+    private int[][] principalVariation = new int[0][]; // The best line of the last finished iteration
+    private int analysisDepth; // The depth being searched
+
+    // The layout of the board being searched, and what depends on it
+    private PackedBoard layout; // The layout, null before the first search
+    private int[] squares; // The index of every slot on the board, row by row
+    private int[] values; // The (additional) value of every slot
+    private int[] corners; // The indices of the corners
+    private int[][] cornerRegions; // The slots that lose their value when each corner is taken
+    private int[] edges; // The indices of the edge slots, the corners first
+    private int[][] weights; // The scaled weight of each feature for each number of pieces on the board
+    private byte[][] plyBoards; // The board at each ply of the search
+    private int[][] plyMoves; // The valid moves at each ply of the search
+    private long keyOwn; // First half of the key of the last position passed to computeKey
+    private long keyOpp; // Second half of the key of the last position passed to computeKey
+    private boolean symmetric; // Whether the keys are canonical (see Symmetry) and the features are evaluated: only on the 8x8 board
+    private int[] valueOfMask; // The distinct slot values on the 8x8 board
+    private long[] valueMasks; // The slots with each of the values
+    private long[] cornerBits; // Each corner as a bitboard
+    private long[] regionMasks; // The slots that lose their value when each corner is taken, as bitboards
+    private final long[] fullLines = new long[Bitboard.NUMDIRECTION / 2]; // Scratch space for the evaluation
+    private int keyTransform; // The symmetry that turned the last position passed to computeKey into its key
 
     /*
-     * Calculates the best move and returns it 
-     * Calls minimax to evaluate every possible child position
-     * 
+     * Calculates the best move with a new bot and returns it
+     *
      * @param  node  the current state of the board
      * @param  player  the current player
      * @param  depth  the depth of the minimax algorithm
      * @return coordinates of the best move
      */
     public static int[] makeMove(int[][] node, int player, int depth) {
-       
-    	nodesExplored = 0;
 
-    	  // Let the player to play be the maximizing player and the other player the minimizing player
-        maximizingPlayer = player;
-        nonMaximizingPlayer = (player + 1) % NUMPLAYER;
+        AI ai = new AI();
+        int[] bestMove = ai.search(node, player, depth);
+        System.out.println("Nodes Explored: " + ai.nodesExplored);
+        return bestMove;
+
+    }
+
+    /*
+     * Calculates the best move and returns it
+     * The depth is cut down to the number of empty slots left.
+     *
+     * @param  board  the current state of the board
+     * @param  player  the current player
+     * @param  strength  the depth of the minimax algorithm
+     * @return coordinates of the best move
+     */
+    public int[] search(int[][] board, int player, int strength) {
+
+        long start = System.currentTimeMillis();
+        synchronized (this) { // The pondering cannot be stopped from elsewhere once the search has started
+            stopPondering(); // What the pondering found is in the transposition table
+            stopped = false;
+        }
+        if (table == null) {
+            table = new TranspositionTable(tableBits);
+        }
+        table.newSearch();
+        if (deterministic) { // Nothing left by earlier searches may change the result
+            clearTable();
+        }
+
+        analysis.set(null);
+        searchStart = start;
+        lastPublished = 0;
+        principalVariation = new int[0][];
+        publishing = true;
+        int[] bestMove = findBestMove(board, player, Math.min(strength, emptySlots(board)));
+        publishing = false;
+
+        stats = new SearchStats(nodesExplored, completedDepth, System.currentTimeMillis() - start);
+        return bestMove;
+
+    }
+
+    /*
+     * Ends the running search or pondering; a search returns the best move of the deepest finished iteration
+     */
+    public void stop() {
+
+        stopped = true;
+
+    }
+
+    /*
+     * Clears an earlier stop() before a searchWindow, which does not clear it itself (search does)
+     * A stop() that comes after this call ends the next searchWindow, however soon it comes, so a caller
+     * that clears and stops under one lock never loses a stop.
+     */
+    public void clearStop() {
+
+        stopped = false;
+
+    }
+
+    /*
+     * Start searching on the opponent's time, in the background, until the next search or stop
+     * The opponent's likely reply is predicted with a shallow search. The position after it is searched first,
+     * then the positions after the other replies. The results go into the transposition table,
+     * so when the opponent has moved, the next search finds most of its tree already searched.
+     *
+     * @param  board  the state of the board, with the opponent to move
+     * @param  opponent  the player whose turn it is
+     * @param  strength  the depth the next search will be made with
+     */
+    public synchronized void ponder(int[][] board, int opponent, int strength) {
+
+        if (deterministic) { // Pondering would fill the table the next search must start without
+            return;
+        }
+        stopPondering();
+        stopped = false;
+        if (table == null) {
+            table = new TranspositionTable(tableBits);
+        }
+        table.newSearch();
+
+        ponderTask = BackgroundTask.start(executor, () -> ponderReplies(board, opponent, strength));
+
+    }
+
+    /*
+     * Search the positions after the opponent's replies, the predicted one first
+     *
+     * @param  board  the state of the board, with the opponent to move
+     * @param  opponent  the player whose turn it is
+     * @param  strength  the depth the next search will be made with
+     */
+    private void ponderReplies(int[][] board, int opponent, int strength) {
+
+        int player = (opponent + 1) % NUMPLAYER; // This bot's player
+        ArrayList < int[] > replies = allPossibleMoves(board, opponent);
+        if (replies.isEmpty()) { // The board is full
+            return;
+        }
+
+        // Put the predicted reply first
+        int[] predicted = findBestMove(board, opponent, Math.min(PREDICTIONDEPTH, emptySlots(board)));
+        for (int i = 0; i < replies.size(); i++) {
+            if (replies.get(i)[0] == predicted[0] && replies.get(i)[1] == predicted[1]) {
+                replies.add(0, replies.remove(i));
+                break;
+            }
+        }
+
+        for (int[] reply : replies) {
+            if (stopped) {
+                return;
+            }
+            int[][] newBoard = boardAfterMove(board, opponent, reply);
+            findBestMove(newBoard, player, Math.min(strength, emptySlots(newBoard)));
+        }
+
+    }
+
+    /*
+     * Stop the pondering, if there is any, and wait for it to finish; pondering that has not started yet never will
+     */
+    public synchronized void stopPondering() {
+
+        BackgroundTask pondering = ponderTask;
+        if (pondering != null) {
+            stopped = true;
+            pondering.finish();
+            ponderTask = null;
+        }
+
+    }
+
+    /*
+     * Gives the latest snapshot of the running (or last) search
+     * Snapshots are published at most every ANALYSISINTERVAL milliseconds within an iteration, and after every iteration.
+     *
+     * @return the snapshot, null if the search has not searched a root move yet
+     */
+    public SearchAnalysis analysis() {
+
+        return analysis.get();
+
+    }
+
+    /*
+     * Publish a snapshot of the running search, unless one was published very recently
+     *
+     * @param  force  publish even if one was published very recently
+     */
+    private void publishAnalysis(boolean force) {
+
+        if (!publishing) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (!force && now - lastPublished < ANALYSISINTERVAL) {
+            return;
+        }
+        lastPublished = now;
+
+        int[] moves = plyMoves[0];
+        int[][] rootMoves = new int[rootScores.length][];
+        for (int i = 0; i < rootMoves.length; i++) {
+            rootMoves[i] = new int[] {layout.row(moves[i]), layout.col(moves[i])};
+        }
+        analysis.set(new SearchAnalysis(analysisDepth, rootMoves, rootScores.clone(), rootExact.clone(), rootSearched.clone(), principalVariation, nodesExplored, now - searchStart));
+
+    }
+
+    /*
+     * Follow the best moves stored in the transposition table from the root
+     * Uses the per-ply boards, so it can only be called between iterations.
+     *
+     * @param  player  the player to move at the root
+     * @param  bestMove  the best root move
+     * @param  depth  the depth of the iteration
+     * @return the moves of the principal variation (row, column of each)
+     */
+    private int[][] findPrincipalVariation(int player, int bestMove, int depth) {
+
+        ArrayList < int[] > line = new ArrayList < int[] > ();
+        int move = bestMove;
+        for (int ply = 0; ply < depth && move >= 0 && plyBoards[ply][move] == INDICATOR; ply++) {
+            line.add(new int[] {layout.row(move), layout.col(move)});
+            layout.play(plyBoards[ply], plyBoards[ply + 1], player, move);
+            player = (player + 1) % NUMPLAYER;
+
+            // The best reply, if the position was stored
+            move = -1;
+            if (table != null) {
+                computeKey(plyBoards[ply + 1], player);
+                int entry = table.find(keyOwn, keyOpp);
+                if (entry >= 0) {
+                    move = fromKeyMove(table.move(entry), keyTransform);
+                }
+            }
+        }
+        return line.toArray(new int[line.size()][]);
+
+    }
+
+    /*
+     * Gives the score of the move returned by the last search, from the deepest iteration that finished
+     *
+     * @return the score for the player who was to move
+     */
+    public int score() {
+
+        return completedScore;
+
+    }
+
+    /*
+     * Turns on deterministic mode: every search starts from an empty transposition table, nothing is pondered,
+     * and root moves with the same score are told apart by their rank for the seed (see tieRank)
+     * Only searches to a depth are reproducible; a search stopped on time ends wherever it got to.
+     *
+     * @param  seed  the seed of the tie-breaking ranks
+     */
+    public void setDeterministic(long seed) {
+
+        deterministic = true;
+        this.seed = seed;
+        stopPondering();
+
+    }
+
+    /*
+     * Log every root move searched: the depth, the window, the move, its score and the nodes so far
+     *
+     * @param  trace  where the log goes, null for none
+     */
+    public void setTrace(PrintWriter trace) {
+
+        this.trace = trace;
+
+    }
+
+    /*
+     * Gives the rank of a move in deterministic tie-breaking: of two moves with the same score, the lower rank wins
+     * The rank depends only on the seed and the slot, not on the order moves are generated or searched in.
+     *
+     * @param  seed  the seed
+     * @param  row  the row of the move
+     * @param  col  the column of the move
+     * @return the rank
+     */
+    static long tieRank(long seed, int row, int col) {
+
+        long h = (seed + (row * PackedBoard.MAXSIZE + col)) * 0x9e3779b97f4a7c15L;
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+
+    }
+
+    /*
+     * Forget every position stored by earlier searches, so the next search does not depend on them
+     */
+    public void clearTable() {
+
+        if (table != null) {
+            table.clear();
+        }
+
+    }
+
+    /*
+     * Set the size of the transposition table; takes effect if no search has been made yet
+     *
+     * @param  bits  the table has 2 to the power of bits slots
+     */
+    public void setTableBits(int bits) {
+
+        tableBits = bits;
+
+    }
+
+    /*
+     * Gives the statistics of the last search
+     *
+     * @return the nodes explored, the depth reached and the time taken
+     */
+    public SearchStats stats() {
+
+        return stats;
+
+    }
+
+    /*
+     * Get ready to search boards of a size: work out the layout, the slot values and the per-ply boards
+     * Does nothing if the size is the same as last time.
+     *
+     * @param  rows  the number of rows
+     * @param  cols  the number of columns
+     */
+    private void setLayout(int rows, int cols) {
+
+        if (layout != null && layout.rows == rows && layout.cols == cols) {
+            return;
+        }
+
+        layout = new PackedBoard(rows, cols);
+        squares = new int[layout.area];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                squares[i * cols + j] = layout.index(i, j);
+            }
+        }
+        values = layout.positionValues();
+        corners = layout.corners();
+        cornerRegions = layout.cornerRegions();
+        edges = edgeSquares(layout, corners);
+        symmetric = rows == 8 && cols == 8;
+        weights = stageWeights(layout.area);
+
+        // The slot values as bitboards, so the 8x8 board can be evaluated with a few masks
+        if (symmetric) {
+            TreeSet < Integer > distinct = new TreeSet < Integer > ();
+            for (int square : squares) {
+                if (values[square] != 0) {
+                    distinct.add(values[square]);
+                }
+            }
+            valueOfMask = new int[distinct.size()];
+            valueMasks = new long[distinct.size()];
+            int m = 0;
+            for (int value : distinct) {
+                valueOfMask[m] = value;
+                for (int k = 0; k < squares.length; k++) {
+                    if (values[squares[k]] == value) {
+                        valueMasks[m] |= 1L << k;
+                    }
+                }
+                m++;
+            }
+            cornerBits = new long[corners.length];
+            regionMasks = new long[corners.length];
+            for (int c = 0; c < corners.length; c++) {
+                cornerBits[c] = 1L << (layout.row(corners[c]) * cols + layout.col(corners[c]));
+                for (int square : cornerRegions[c]) {
+                    regionMasks[c] |= 1L << (layout.row(square) * cols + layout.col(square));
+                }
+            }
+        }
+
+        // A search is never deeper than the number of empty slots, plus a ply for the root
+        plyBoards = new byte[layout.area + 1][layout.length];
+        plyMoves = new int[layout.area + 1][layout.area];
+
+        // Keys of different sizes of board mean different things
+        if (table != null) {
+            table.clear();
+        }
+
+    }
+
+    /*
+     * Calculates the best move
+     * Uses iterative deepening: every depth from 1 up to the requested depth is searched,
+     * and each iteration after the first starts with an aspiration window around the previous score.
+     * If the score falls outside of the window, the iteration is searched again with the full window.
+     *
+     * @param  node  the current state of the board
+     * @param  player  the current player
+     * @param  depth  the depth of the minimax algorithm
+     * @return coordinates of the best move
+     */
+    private int[] findBestMove(int[][] node, int player, int depth) {
+
+        nodesExplored = 0;
+        completedDepth = 0;
+        completedScore = 0;
+
+        setLayout(node.length, node[0].length);
+        System.arraycopy(layout.fromBoard(node), 0, plyBoards[0], 0, layout.length);
+
+        // Moves at the root are kept in board order so ties are broken the same way as plain alpha-beta
+        int numMoves = layout.moves(plyBoards[0], plyMoves[0]);
+        if (numMoves == 0) { // The board is full
+            return null;
+        }
 
-        // The worst evaluation possible
-        int bestEval = Integer.MIN_VALUE;
         // The best move to be returned
-        int[] bestMove = null;
+        int bestMove = -1;
+        // The score of the previous iteration
+        int prevEval = 0;
+
+        for (int d = 1; d <= depth; d++) {
+
+            // Start the analysis of the iteration
+            analysisDepth = d;
+            rootScores = new int[numMoves];
+            rootExact = new boolean[numMoves];
+            rootSearched = new boolean[numMoves];
+
+            int eval;
+            if (d == 1) { // Nothing to centre a window on yet
+                eval = searchRoot(player, numMoves, d, -INFINITY, INFINITY);
+            } else {
+                int alpha = prevEval - ASPIRATIONWINDOW;
+                int beta = prevEval + ASPIRATIONWINDOW;
+                eval = searchRoot(player, numMoves, d, alpha, beta);
+                if (eval <= alpha || eval >= beta) { // The score fell outside the window, so it is only a bound
+                    eval = searchRoot(player, numMoves, d, -INFINITY, INFINITY);
+                }
+            }
+
+            if (stopped && bestMove != -1) { // The iteration was cut short, so its result cannot be trusted
+                break;
+            }
+
+            prevEval = eval;
+            bestMove = rootBestMove;
+            completedDepth = d;
+            completedScore = eval;
+            if (trace != null) {
+                trace.println("depth " + d + " best " + SearchAnalysis.moveName(new int[] {layout.row(bestMove), layout.col(bestMove)}) + " score " + eval + " nodes " + nodesExplored);
+            }
+
+            if (publishing) {
+                principalVariation = findPrincipalVariation(player, bestMove, d);
+                publishAnalysis(true);
+            }
 
-        // Evaluate each child position and pick the best position
-        for (int[] move : allPossibleMoves(node, player)) { // For every child of the position, 
-            int[][] newNode = boardAfterMove(node, player, move); // Get the board position of the child
+        }
+
+        return new int[] {layout.row(bestMove), layout.col(bestMove)};
+
+    }
+
+    /*
+     * Turns Multi-ProbCut selective pruning on or off
+     * The first time it is turned on, the fitted parameters are read from the probcut file.
+     * Without fitted parameters, or on a board of a size they were not fitted on, the search stays exact.
+     *
+     * @param  enabled  whether Multi-ProbCut should be used
+     */
+    public void setProbCut(boolean enabled) {
+
+        if (enabled && probCutTable == null) {
+            probCutTable = loadProbCutTable(PROBCUTFILE);
+        }
+        probCut = enabled;
+
+    }
+
+    /*
+     * Sets where the pondering runs: by default on a thread of its own
+     *
+     * @param  executor  the executor, such as the search pool shared by the games
+     */
+    public void setExecutor(Executor executor) {
 
-            int childEval = minimax(newNode, depth - 1, Integer.MIN_VALUE, Integer.MAX_VALUE, false); // Call on minimax to evaluate the child's value
-            if (childEval > bestEval) { // If the child value beats the best value, 
+        this.executor = executor;
+
+    }
+
+    /*
+     * Sets how many plies the quiescence search may go past the horizon
+     *
+     * @param  depth  the most plies past the horizon, 0 to stop at the horizon
+     */
+    public void setQuiescence(int depth) {
+
+        quiescenceDepth = Math.max(0, depth);
+
+    }
+
+    /*
+     * Searches a position to a fixed depth within a window, keeping the transposition table between calls
+     * Used by SearchWorker to search the work units that a DistributedSearch hands out.
+     * An earlier stop() is not cleared, so one that comes just before the search starts still ends it (see clearStop).
+     *
+     * @param  board  the position
+     * @param  player  the player to move
+     * @param  depth  the depth to search to, cut down to the number of empty slots left
+     * @param  alpha  the lower bound of the window
+     * @param  beta  the upper bound of the window
+     * @return the evaluation of the position for the player to move (a bound if it falls outside of the window)
+     */
+    public int searchWindow(int[][] board, int player, int depth, int alpha, int beta) {
+
+        long start = System.currentTimeMillis();
+        if (table == null) {
+            table = new TranspositionTable(tableBits);
+        }
+        table.newSearch();
+        if (deterministic) {
+            clearTable();
+        }
+
+        nodesExplored = 0;
+        depth = Math.min(depth, emptySlots(board));
+        setLayout(board.length, board[0].length);
+        System.arraycopy(layout.fromBoard(board), 0, plyBoards[0], 0, layout.length);
+        int score = negamax(0, player, depth, alpha, beta);
+
+        stats = new SearchStats(nodesExplored, depth, System.currentTimeMillis() - start);
+        return score;
+
+    }
+
+    /*
+     * Searches a position with the full window and no selective pruning
+     * Used to collect the exact scores that the Multi-ProbCut parameters are fitted to
+     *
+     * @param  node  the position
+     * @param  player  the player to move
+     * @param  depth  the depth to search to
+     * @return the evaluation of the position for the player to move
+     */
+    static int exactScore(int[][] node, int player, int depth) {
+
+        AI ai = new AI();
+        ai.setLayout(node.length, node[0].length);
+        System.arraycopy(ai.layout.fromBoard(node), 0, ai.plyBoards[0], 0, ai.layout.length);
+        return ai.negamax(0, player, depth, -INFINITY, INFINITY);
+
+    }
+
+    /*
+     * Searches every root move with principal variation search and sets rootBestMove
+     * The root position is plyBoards[0] and its moves are plyMoves[0].
+     * The first move is searched with the full window, every later move with a null window.
+     * A move is only searched again with the full window if it beats the best move so far.
+     * In deterministic mode a move that ranks before the best move also wins if it ties it,
+     * so its null window is one lower.
+     *
+     * @param  player  the current player
+     * @param  numMoves  the number of moves to search
+     * @param  depth  the depth to search to
+     * @param  alpha  the lower bound of the window
+     * @param  beta  the upper bound of the window
+     * @return the score of the best move (a bound if it falls outside of the window)
+     */
+    private int searchRoot(int player, int numMoves, int depth, int alpha, int beta) {
+
+        int opponent = (player + 1) % NUMPLAYER;
+        int bestEval = -INFINITY; // The worst evaluation possible
+        int[] moves = plyMoves[0];
+        rootBestMove = -1;
+        long bestRank = Long.MAX_VALUE; // The tie-breaking rank of the best move
+
+        for (int i = 0; i < numMoves; i++) { // For every child of the position,
+            layout.play(plyBoards[0], plyBoards[1], player, moves[i]); // Get the board position of the child
+            long rank = deterministic ? tieRank(seed, layout.row(moves[i]), layout.col(moves[i])) : 0;
+            int floor = deterministic && rank < bestRank && i > 0 ? alpha - 1 : alpha; // The score the move has to beat
+
+            int childEval;
+            boolean exact; // Whether the score is inside the window of the last search, so not a bound
+            if (i == 0) { // The first move is the principal variation
+                childEval = -negamax(1, opponent, depth - 1, -beta, -alpha);
+                exact = childEval > alpha && childEval < beta;
+            } else {
+                childEval = -negamax(1, opponent, depth - 1, -floor - 1, -floor); // Null-window probe
+                exact = false;
+                if (childEval > floor && childEval < beta) { // It beat the best move, so find its exact value
+                    childEval = -negamax(1, opponent, depth - 1, -beta, -floor);
+                    exact = childEval > floor && childEval < beta;
+                }
+            }
+
+            if (!stopped) { // Record the score for the analysis
+                rootScores[i] = childEval;
+                rootExact[i] = exact;
+                rootSearched[i] = true;
+                publishAnalysis(false);
+            }
+            if (trace != null) {
+                trace.println("depth " + depth + " window " + alpha + " " + beta + " move " + SearchAnalysis.moveName(new int[] {layout.row(moves[i]), layout.col(moves[i])})
+                        + " score " + childEval + (exact ? " exact" : " bound") + " nodes " + nodesExplored);
+            }
+
+            if (childEval > bestEval || (deterministic && childEval == bestEval && rank < bestRank)) { // If the child value beats the best value,
                 bestEval = childEval; // It is now the best value
-                bestMove = move;
+                rootBestMove = moves[i];
+                bestRank = rank;
+            }
+            alpha = Math.max(alpha, bestEval);
+            if (alpha >= beta) { // Fail high: the window is too low
+                break;
             }
         }
 
-        System.out.println("Nodes Explored: " + nodesExplored);
-        return bestMove;
+        return bestEval;
+
     }
 
     /*
-     * The minimax function that will be caleld recursively
-     * 
-     * @param  node  the position of the board representing the node
+     * The negamax function with principal variation search that will be called recursively
+     * Scores are always from the point of view of the player to move.
+     *
+     * @param  ply  the distance from the root; the node's board is plyBoards[ply]
+     * @param  player  the player to move at the node
      * @param  depth  the depth at which the node is at
-     * @param  alpha  the best possible value for the maximizing player so far (alpha value)
-     * @param  beta  the best possible value for the minimizing player so far (beta value)
-     * @param  max  whether the node is the maximizing player's node
+     * @param  alpha  the best value the player to move is guaranteed so far (alpha value)
+     * @param  beta  the best value the opponent is guaranteed so far (beta value)
+     * @return the evaluation of the node for the player to move
      */
-    private static int minimax(int[][] node, int depth, int alpha, int beta, boolean max) {
+    private int negamax(int ply, int player, int depth, int alpha, int beta) {
+
+        if (stopped) { // The result will be thrown away
+            return 0;
+        }
 
         nodesExplored++;
+        byte[] node = plyBoards[ply];
 
-        // If the function call reached the bottom of the tree, return a static evaluation
+        // If the function call reached the bottom of the tree, settle the corners and edges and return a static evaluation
         if (depth == 0) {
-            return evaluatePosition(node);
+            return quiescence(ply, player, alpha, beta, quiescenceDepth);
         }
 
-        int bestEval; // The evaluation to return
-
-        if (max) { // If the node is the maximizing player's node, 
-            bestEval = Integer.MIN_VALUE; // set to the worst possible value
-            for (int[] move : allPossibleMoves(node, maximizingPlayer)) { // for all child nodes, 
-                int[][] newNode = boardAfterMove(node, maximizingPlayer, move); // find the corresponding board position of the node
-                int childEval = minimax(newNode, depth - 1, alpha, beta, false); // recursive call to find the values of the child nodees
-                bestEval = Math.max(bestEval, childEval); // update the best evaluation
-                alpha = Math.max(alpha, bestEval); // update the alpha value 
-                if (beta <= alpha) { // there has been a guranteed more-ideal or equally-ideal path
-                    break;
+        int opponent = (player + 1) % NUMPLAYER;
+        int alphaOrig = alpha; // To tell whether the result is exact or a bound
+
+        // Look the position up in the transposition table
+        computeKey(node, player);
+        long own = keyOwn;
+        long opp = keyOpp;
+        int transform = keyTransform;
+        int tableMove = -1; // The best move found the last time the position was searched
+        if (table != null) {
+            int entry = table.find(own, opp);
+            if (entry >= 0) {
+                tableMove = fromKeyMove(table.move(entry), transform);
+                if (table.depth(entry) == depth) { // Only the same depth, so the result is the same as searching again
+                    int score = table.score(entry);
+                    int flag = table.flag(entry);
+                    if (flag == TranspositionTable.EXACT
+                            || (flag == TranspositionTable.LOWER && score >= beta)
+                            || (flag == TranspositionTable.UPPER && score <= alpha)) {
+                        return score;
+                    }
                 }
             }
-        } else { // If the node is the minimizing player's node, 
-            bestEval = Integer.MAX_VALUE; 
-            for (int[] move : allPossibleMoves(node, nonMaximizingPlayer)) {
-                int[][] newNode = boardAfterMove(node, nonMaximizingPlayer, move);
-                int childEval = minimax(newNode, depth - 1, alpha, beta, true);
-                bestEval = Math.min(bestEval, childEval);
-                beta = Math.min(beta, bestEval);
-                if (beta <= alpha) {
-                    break;
+        }
+
+        // Try to predict from a shallow search that the node will fall outside of the window
+        if (probCut && depth >= PROBCUTMINDEPTH) {
+            int cut = probCut(ply, player, depth, alpha, beta);
+            if (cut != NOCUT) {
+                return cut;
+            }
+        }
+
+        int[] moves = plyMoves[ply];
+        int numMoves = orderedMoves(node, moves, tableMove);
+        if (numMoves == 0) { // The board is full
+            return evaluatePosition(node, player);
+        }
+
+        byte[] newNode = plyBoards[ply + 1];
+        int bestEval = -INFINITY; // The evaluation to return
+        int bestSquare = -1; // The move with the best evaluation
+
+        for (int i = 0; i < numMoves; i++) { // for all child nodes,
+            layout.play(node, newNode, player, moves[i]); // find the corresponding board position of the node
+
+            int childEval;
+            if (i == 0) { // search the expected best move with the full window
+                childEval = -negamax(ply + 1, opponent, depth - 1, -beta, -alpha);
+            } else { // prove the other moves are worse with a null window
+                childEval = -negamax(ply + 1, opponent, depth - 1, -alpha - 1, -alpha);
+                if (childEval > alpha && childEval < beta) { // the proof failed, search again with the full window
+                    childEval = -negamax(ply + 1, opponent, depth - 1, -beta, -alpha);
                 }
             }
+
+            if (childEval > bestEval) { // update the best evaluation
+                bestEval = childEval;
+                bestSquare = moves[i];
+            }
+            alpha = Math.max(alpha, bestEval); // update the alpha value
+            if (alpha >= beta) { // there has been a guranteed more-ideal or equally-ideal path
+                break;
+            }
+        }
+
+        // Remember the result, unless the search was stopped and it is meaningless
+        if (table != null && !stopped) {
+            int flag = bestEval <= alphaOrig ? TranspositionTable.UPPER : bestEval >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(own, opp, depth, bestEval, flag, toKeyMove(bestSquare, transform));
         }
 
         return bestEval;
@@ -112,129 +836,556 @@ public class AI {
     }
 
     /*
-     * Evaluate how good a position is: bigger means better for the maximizing player
-     * 
-     * @param  board  the state of the board
-     * @return the evaluation score of the board position
+     * Quiescence search: extends the search past the horizon with the moves that swing the evaluation the most,
+     * taking a corner or outflanking along an edge, until the position is quiet.
+     * Without it the search would stop right before the opponent takes a corner and never see it coming.
+     * The player to move may also stand on the static evaluation, as any other move is assumed to be no worse.
+     * The search goes at most quiescenceDepth plies past the horizon. The tree it searches depends only on the
+     * position, never on the window or on the order of the moves, so the value of a node is the same whichever
+     * window it is searched with, as PVS, the aspiration windows and the distributed search all need.
+     *
+     * @param  ply  the distance from the root; the node's board is plyBoards[ply]
+     * @param  player  the player to move
+     * @param  alpha  the alpha value of the node
+     * @param  beta  the beta value of the node
+     * @param  depth  the plies the quiescence search may still go
+     * @return the evaluation of the node
      */
-    private static int evaluatePosition(int[][] board) {
+    private int quiescence(int ply, int player, int alpha, int beta, int depth) {
 
-        int pieceDifference = evaluatePieceDifference(board); // The difference in how many pieces each player has
-        int specialPieceDifference = evaluateSpecialPieceDifference(board); // The difference in the additional values of each piece 
+        byte[] node = plyBoards[ply];
+        int bestEval = evaluatePosition(node, player); // Standing on the static evaluation
+        if (bestEval >= beta) {
+            return bestEval;
+        }
+        alpha = Math.max(alpha, bestEval);
+        if (depth == 0) {
+            return bestEval;
+        }
 
-        int evaluation = pieceDifference + specialPieceDifference; // The overall evaluation
+        int opponent = (player + 1) % NUMPLAYER;
+        byte[] newNode = plyBoards[ply + 1];
 
-        return evaluation;
+        for (int i = 0; i < edges.length; i++) {
+            int square = edges[i];
+            if (node[square] != INDICATOR) { // Not a valid move
+                continue;
+            }
+            int flipped = layout.play(node, newNode, player, square);
+            if (flipped == 0 && i >= corners.length) { // A quiet edge move
+                continue;
+            }
+
+            nodesExplored++;
+            int childEval = -quiescence(ply + 1, opponent, -beta, -alpha, depth - 1);
+
+            bestEval = Math.max(bestEval, childEval);
+            alpha = Math.max(alpha, bestEval);
+            if (alpha >= beta) {
+                break;
+            }
+        }
+
+        return bestEval;
 
     }
 
     /*
-	 * Evaluate how many pieces the maximizing player has over the minimizing player
-	 * 
-	 * @param  board  the state of the board
-	 * @return the number of pieces the maximizing player has over the minimizing player
+     * Find the edge slots of a board, the corners first, for the quiescence search
+     *
+     * @param  layout  the layout of the board
+     * @param  corners  the indices of the corners
+     * @return the indices of the edge slots
      */
-    private static int evaluatePieceDifference(int[][] board) {
+    private static int[] edgeSquares(PackedBoard layout, int[] corners) {
+
+        int[] edges = new int[2 * (layout.rows + layout.cols) - 4];
+        int numEdges = 0;
+        for (int corner : corners) {
+            edges[numEdges++] = corner;
+        }
+        for (int i = 0; i < layout.rows; i++) {
+            for (int j = 0; j < layout.cols; j++) {
+                boolean edge = i == 0 || j == 0 || i == layout.rows - 1 || j == layout.cols - 1;
+                boolean corner = (i == 0 || i == layout.rows - 1) && (j == 0 || j == layout.cols - 1);
+                if (edge && !corner) {
+                    edges[numEdges++] = layout.index(i, j);
+                }
+            }
+        }
+        return edges;
+
+    }
 
-        int maximizingPlayerPieces = 0; // Number of maximizing-player pieces
-        int nonMaximizingPlayerPieces = 0; // Number of non-maximizing-player pieces
+    /*
+     * Multi-ProbCut: predicts the deep score v of a node from a shallow score v' as v = a*v' + b,
+     * with a normal error of standard deviation sigma fitted per depth and game stage.
+     * If the shallow search shows that v is very likely at least beta, or at most alpha, the node is cut.
+     *
+     * @param  ply  the distance from the root; the node's board is plyBoards[ply]
+     * @param  player  the player to move at the node
+     * @param  depth  the depth at which the node is at
+     * @param  alpha  the alpha value of the node
+     * @param  beta  the beta value of the node
+     * @return beta or alpha if the node was cut, NOCUT otherwise
+     */
+    private int probCut(int ply, int player, int depth, int alpha, int beta) {
 
-        for (int i = 0; i < NUMROW; i++) { 
-            for (int j = 0; j < NUMCOL; j++) {
-                if (board[i][j] == maximizingPlayer) {
-                    maximizingPlayerPieces++;
-                } else if (board[i][j] == nonMaximizingPlayer) {
-                    nonMaximizingPlayerPieces++;
+        if (layout.rows != PROBCUTSIZE || layout.cols != PROBCUTSIZE) { // The parameters do not apply to this board
+            return NOCUT;
+        }
+        if (probCutTable == null || depth >= probCutTable.length || probCutTable[depth] == null) { // Nothing fitted for this depth
+            return NOCUT;
+        }
+        double[] params = probCutTable[depth][stage(plyBoards[ply])];
+        if (params == null || params[1] <= 0) { // The shallow score does not predict the deep score
+            return NOCUT;
+        }
+        int shallow = (int) params[0];
+        double a = params[1];
+        double b = params[2];
+        double sigma = params[3];
+
+        // Is v >= beta likely? (a*v' + b - t*sigma >= beta)
+        if (beta < INFINITY) {
+            int bound = (int) Math.ceil((beta + PROBCUTTHRESHOLD * sigma - b) / a);
+            if (negamax(ply, player, shallow, bound - 1, bound) >= bound) {
+                return beta;
+            }
+        }
+
+        // Is v <= alpha likely? (a*v' + b + t*sigma <= alpha)
+        if (alpha > -INFINITY) {
+            int bound = (int) Math.floor((alpha - PROBCUTTHRESHOLD * sigma - b) / a);
+            if (negamax(ply, player, shallow, bound, bound + 1) <= bound) {
+                return alpha;
+            }
+        }
+
+        return NOCUT;
+
+    }
+
+    /*
+     * Work out the transposition table key of a position and put it in keyOwn and keyOpp
+     * Up to 64 slots the key is the two bitboards, so it is exact; on bigger boards it is two 64-bit hashes.
+     * On the 8x8 board the bitboards are turned into their canonical form, so the reflections and rotations
+     * of a position share one entry; the symmetry used goes in keyTransform.
+     *
+     * @param  board  the packed board
+     * @param  player  the player to move
+     */
+    private void computeKey(byte[] board, int player) {
+
+        long own = 0;
+        long opp = 0;
+
+        if (squares.length <= 64) {
+            for (int k = 0; k < squares.length; k++) {
+                byte slot = board[squares[k]];
+                if (slot == player) {
+                    own |= 1L << k;
+                } else if (slot >= 0) {
+                    opp |= 1L << k;
+                }
+            }
+        } else {
+            for (int k = 0; k < squares.length; k++) {
+                byte slot = board[squares[k]];
+                if (slot == player) {
+                    own ^= ZOBRIST[0][k];
+                    opp ^= ZOBRIST[1][k];
+                } else if (slot >= 0) {
+                    own ^= ZOBRIST[2][k];
+                    opp ^= ZOBRIST[3][k];
                 }
             }
         }
 
-        return maximizingPlayerPieces - nonMaximizingPlayerPieces;
+        keyTransform = 0;
+        if (symmetric) {
+            keyTransform = Symmetry.canonical(own, opp);
+            own = Symmetry.transform(own, keyTransform);
+            opp = Symmetry.transform(opp, keyTransform);
+        }
+
+        keyOwn = own;
+        keyOpp = opp;
+
+    }
+
+    /*
+     * Turn a move on the board into the same move on the position's key, so it can be stored in the table
+     *
+     * @param  move  the index of the move on the packed board, -1 if none
+     * @param  transform  the symmetry that turned the position into its key
+     * @return the index of the move on the key's board
+     */
+    private int toKeyMove(int move, int transform) {
+
+        if (move < 0 || transform == 0) {
+            return move;
+        }
+        int square = Symmetry.transformSquare(layout.row(move) * 8 + layout.col(move), transform);
+        return layout.index(square / 8, square % 8);
 
     }
 
-    /* 
-     * Evaluate the difference in additional values of special pieces the maximizing player has over the minimizing player
+    /*
+     * Turn a move stored for a position's key back into the move on the board
+     *
+     * @param  move  the index of the move on the key's board, -1 if none
+     * @param  transform  the symmetry that turned the position into its key
+     * @return the index of the move on the packed board
+     */
+    private int fromKeyMove(int move, int transform) {
+
+        if (move < 0 || transform == 0) {
+            return move;
+        }
+        int square = Symmetry.inverseSquare(layout.row(move) * 8 + layout.col(move), transform);
+        return layout.index(square / 8, square % 8);
+
+    }
+
+    /*
+     * Count the empty slots (including indicators) on the board
+     *
      * @param  board  the state of the board
-     * @return how much the maximizing player is favored by the additional values of pieces
-     */ 
-    private static int evaluateSpecialPieceDifference(int[][] board) { 
-
-    	int maximizingPlayerSpecial = 0; // Sum of additional values of maximizing-player pieces
-    	int nonMaximizingPlayerSpecial = 0; // Sum of additional values of non-maximizing-player pieces
-
-    	// (Additional) values associated with positions
-    	int[][] valueBoard = { 
-    		{15, -2,  2,  1,  1,  2, -2, 15},
-    		{-2, -4, -1, -1, -1, -1, -4, -2},
-    		{2 , -1,  2,  0,  0,  2, -1,  2},
-    		{1,  -1,  0,  0,  0,  0, -1,  1},
-    		{1,  -1,  0,  0,  0,  0, -1,  1},    		
-    		{2 , -1,  2,  0,  0,  2, -1,  2},
-    		{-2, -4, -1, -1, -1, -1, -4, -2},
-    		{15, -2,  2,  1,  1,  2, -2, 15},
-    		};
+     * @return the number of slots without a piece
+     */
+    private static int emptySlots(int[][] board) {
 
-    	// If a certain corner is already taken, the positions around it lose their additional values
-    	if (board[0][0] == maximizingPlayer || board[0][0] == nonMaximizingPlayer) { 
-             // Set the first row except the corner piece to 0
-             for (int i = 1; i < 3; i++) { 
-               valueBoard[0][i] = 0;
-             }
-             for (int i = 1; i < 3; i++) {
-                for (int j = 0; j < 3; j++) {
-                    valueBoard[i][j] = 0;
+        int empty = 0;
+        for (int i = 0; i < board.length; i++) {
+            for (int j = 0; j < board[i].length; j++) {
+                if (board[i][j] < 0) {
+                    empty++;
                 }
-            }   		
-    	}
+            }
+        }
+        return empty;
 
-    	if (board[0][7] == maximizingPlayer || board[0][7] == nonMaximizingPlayer) { 
-             // Set the first row except the corner piece to 0
-             for (int i = 5; i < 7; i++) { 
-               valueBoard[0][i] = 0;
-             }
-             for (int i = 1; i < 3; i++) {
-                for (int j = 5; j < 8; j++) {
-                    valueBoard[i][j] = 0;
-                }
-            }   		
-    	}
+    }
 
-    	if (board[7][0] == maximizingPlayer || board[7][0] == nonMaximizingPlayer) { 
-             // Set the last row except the corner piece to 0
-             for (int i = 1; i < 3; i++) { 
-                valueBoard[7][i] = 0;
-             }
-             for (int i = 5; i < 7; i++) {
-                for (int j = 0; j < 3; j++) {
-                    valueBoard[i][j] = 0;
+    /*
+     * Determine the game stage of a position from the number of pieces on the board
+     *
+     * @param  board  the state of the board
+     * @return the game stage, from 0 (opening) to NUMSTAGES - 1 (endgame)
+     */
+    static int stage(int[][] board) {
+
+        int area = board.length * board[0].length;
+        int pieces = area - emptySlots(board); // Number of pieces on the board
+
+        return Math.min(NUMSTAGES - 1, pieces * NUMSTAGES / area);
+
+    }
+
+    /*
+     * Determine the game stage of a packed position from the number of pieces on the board
+     *
+     * @param  board  the packed board
+     * @return the game stage, from 0 (opening) to NUMSTAGES - 1 (endgame)
+     */
+    private int stage(byte[] board) {
+
+        return Math.min(NUMSTAGES - 1, countPieces(board) * NUMSTAGES / squares.length);
+
+    }
+
+    /*
+     * Count the pieces on a packed board
+     *
+     * @param  board  the packed board
+     * @return the number of pieces of both players
+     */
+    private int countPieces(byte[] board) {
+
+        int pieces = 0; // Number of pieces on the board
+        for (int square : squares) {
+            if (board[square] >= 0) {
+                pieces++;
+            }
+        }
+        return pieces;
+
+    }
+
+    /*
+     * Work out the weights of the evaluation features for every number of pieces on the board.
+     * Each weight is given for the middle of each game stage and interpolated in a straight line in between,
+     * so the evaluation changes smoothly as the board fills instead of jumping from one stage to the next.
+     *
+     * @param  area  the number of slots on the board
+     * @return the weights scaled by WEIGHTSCALE, indexed by the number of pieces and then the feature
+     */
+    private static int[][] stageWeights(int area) {
+
+        int[][] table = new int[area + 1][FEATUREWEIGHTS.length];
+        for (int pieces = 0; pieces <= area; pieces++) {
+            // Position between the middles of the stages, in stages
+            double position = Math.min(NUMSTAGES - 1, Math.max(0, (double) pieces * NUMSTAGES / area - 0.5));
+            int from = Math.min(NUMSTAGES - 2, (int) position);
+            double along = position - from;
+            for (int f = 0; f < FEATUREWEIGHTS.length; f++) {
+                double weight = FEATUREWEIGHTS[f][from] * (1 - along) + FEATUREWEIGHTS[f][from + 1] * along;
+                table[pieces][f] = (int) Math.round(weight * WEIGHTSCALE);
+            }
+        }
+        return table;
+
+    }
+
+    /*
+     * Read the fitted Multi-ProbCut parameters
+     * Each line holds: depth, shallow depth, stage, a, b, sigma. Lines starting with # are ignored.
+     * The file is read from the working directory, or from the classpath (a packaged jar) if it is not there.
+     * 
+     * @param  fileName  the file written by ProbCutCalibration
+     * @return the parameters indexed by depth and stage, or null if the file could not be read
+     */
+    static double[][][] loadProbCutTable(String fileName) {
+
+        double[][][] table = null;
+
+        try {
+            File file = new File(fileName);
+            InputStream stream = file.exists() ? new FileInputStream(file) : AI.class.getClassLoader().getResourceAsStream(fileName);
+            if (stream == null) {
+                throw new FileNotFoundException(fileName);
+            }
+            BufferedReader in = new BufferedReader(new InputStreamReader(stream));
+            ArrayList < double[] > lines = new ArrayList < double[] > ();
+            int maxDepth = 0;
+            String line = in.readLine();
+            while (line != null) {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    String[] fields = line.split("\\s+");
+                    double[] values = new double[fields.length];
+                    for (int i = 0; i < fields.length; i++) {
+                        values[i] = Double.parseDouble(fields[i]);
+                    }
+                    lines.add(values);
+                    maxDepth = Math.max(maxDepth, (int) values[0]);
                 }
-            }   		
-    	}
+                line = in.readLine();
+            }
+            in.close();
 
-    	if (board[7][7] == maximizingPlayer || board[7][7] == nonMaximizingPlayer) { 
-             // Set the last row except the corner piece to 0
-             for (int i = 5; i < 7; i++) { 
-                valueBoard[7][i] = 0;
-             }
-             for (int i = 5; i < 7; i++) {
-                for (int j = 5; j < 8; j++) {
-                    valueBoard[i][j] = 0;
+            table = new double[maxDepth + 1][][];
+            for (double[] values : lines) {
+                int depth = (int) values[0];
+                if (table[depth] == null) {
+                    table[depth] = new double[NUMSTAGES][];
                 }
-            }   		
+                table[depth][(int) values[2]] = new double[] {values[1], values[3], values[4], values[5]};
+            }
+        } catch (IOException iox) {
+            System.out.println("ProbCut file not found.");
+        } catch (RuntimeException rx) {
+            System.out.println("ProbCut file is malformed.");
+            table = null;
+        }
+
+        return table;
+
+    }
+
+    /*
+     * Evaluate how good a position is: bigger means better for the given player
+     * The features are weighted for how full the board is: pieces count for little early on and for a lot at the end.
+     *
+     * @param  board  the packed board
+     * @param  player  the player whose point of view the evaluation is from
+     * @return the evaluation score of the board position
+     */
+    private int evaluatePosition(byte[] board, int player) {
+
+        if (symmetric) { // The 8x8 board has a faster and better evaluation
+            return evaluateBitboards(board, player);
+        }
+
+        int pieceDifference = evaluatePieceDifference(board, player); // The difference in how many pieces each player has
+        int specialPieceDifference = evaluateSpecialPieceDifference(board, player); // The difference in the additional values of each piece
+        int[] weight = weights[countPieces(board)]; // The weights for this stage of the game
+
+        int evaluation = weight[PIECES] * pieceDifference + weight[VALUES] * specialPieceDifference; // The overall evaluation
+
+        return evaluation / WEIGHTSCALE;
+
+    }
+
+    /*
+     * Evaluate an 8x8 position with bitboard features, weighted by the number of pieces on the board (see stageWeights):
+     * the piece difference and the additional values as for other boards, and
+     * stable pieces (that can never be flipped), mobility (moves that outflank),
+     * potential mobility (empty slots next to the opponent's pieces) and frontier pieces (next to empty slots).
+     * There is no parity term: nobody ever passes, so who gets the last move only depends on the number of pieces,
+     * which is the same for every move searched at a node.
+     *
+     * @param  board  the packed board
+     * @param  player  the player whose point of view the evaluation is from, who is to move
+     * @return the evaluation score of the board position
+     */
+    private int evaluateBitboards(byte[] board, int player) {
+
+        // Read the bitboards
+        int width = squares[layout.cols] - squares[0]; // The distance between two rows in the array
+        long own = Bitboard.fromPacked(board, squares[0], width, player);
+        long opp = Bitboard.fromPacked(board, squares[0], width, NUMPLAYER - 1 - player);
+        long occupied = own | opp;
+        long empty = ~occupied;
+        int[] weight = weights[Long.bitCount(occupied)]; // The weights for this stage of the game
+
+        // The piece difference
+        int evaluation = weight[PIECES] * (Long.bitCount(own) - Long.bitCount(opp));
+
+        // The additional values, except around taken corners
+        evaluation += weight[VALUES] * valueDifference(own, opp, occupied);
+
+        // Stable pieces, once there can be any
+        if (Bitboard.fullLines(occupied, fullLines)) {
+            evaluation += weight[STABLE] * (Long.bitCount(Bitboard.stable(own, fullLines)) - Long.bitCount(Bitboard.stable(opp, fullLines)));
+        }
+
+        // Mobility
+        evaluation += weight[MOBILITY] * (Long.bitCount(Bitboard.captures(own, opp)) - Long.bitCount(Bitboard.captures(opp, own)));
+
+        // Potential mobility and frontier pieces
+        long nextToEmpty = Bitboard.neighbours(empty);
+        evaluation += weight[POTENTIAL] * (Long.bitCount(Bitboard.neighbours(opp) & empty) - Long.bitCount(Bitboard.neighbours(own) & empty));
+        evaluation += weight[FRONTIER] * (Long.bitCount(own & nextToEmpty) - Long.bitCount(opp & nextToEmpty));
+
+        evaluation /= WEIGHTSCALE;
+        return evaluation;
+
+    }
+
+    /*
+     * Evaluate the additional values of each player's pieces on the 8x8 board, apart from evaluateBitboards
+     * so that both stay small enough for the JIT compiler to inline
+     * The slots around a taken corner lose their value.
+     *
+     * @param  own  the pieces of the player whose point of view the evaluation is from
+     * @param  opp  the pieces of the opponent
+     * @param  occupied  every piece on the board
+     * @return the additional values of the player's pieces minus the opponent's
+     */
+    private int valueDifference(long own, long opp, long occupied) {
+
+        long valued = FULL;
+        for (int c = 0; c < cornerBits.length; c++) {
+            if ((occupied & cornerBits[c]) != 0) {
+                valued &= ~regionMasks[c];
+            }
+        }
+        int value = 0;
+        for (int m = 0; m < valueMasks.length; m++) {
+            long mask = valueMasks[m] & valued;
+            value += valueOfMask[m] * (Long.bitCount(own & mask) - Long.bitCount(opp & mask));
+        }
+        return value;
+
+    }
+
+    /*
+	 * Evaluate how many pieces the player has over the opponent
+	 *
+	 * @param  board  the packed board
+	 * @param  player  the player whose point of view the evaluation is from
+	 * @return the number of pieces the player has over the opponent
+     */
+    private int evaluatePieceDifference(byte[] board, int player) {
+
+        int playerPieces = 0; // Number of the player's pieces
+        int opponentPieces = 0; // Number of the opponent's pieces
+
+        for (int square : squares) {
+            if (board[square] == player) {
+                playerPieces++;
+            } else if (board[square] >= 0) {
+                opponentPieces++;
+            }
+        }
+
+        return playerPieces - opponentPieces;
+
+    }
+
+    /*
+     * Evaluate the difference in additional values of special pieces the player has over the opponent
+     * @param  board  the packed board
+     * @param  player  the player whose point of view the evaluation is from
+     * @return how much the player is favored by the additional values of pieces
+     */
+    private int evaluateSpecialPieceDifference(byte[] board, int player) {
+
+    	int playerSpecial = 0; // Sum of additional values of the player's pieces
+    	int opponentSpecial = 0; // Sum of additional values of the opponent's pieces
+
+    	for (int square : squares) {
+    		if (board[square] == player) {
+    			playerSpecial += values[square];
+    		} else if (board[square] >= 0) {
+    			opponentSpecial += values[square];
+    		}
     	}
 
-    	for (int i = 0; i < NUMROW; i++) { 
-    		for (int j = 0; j < NUMCOL; j++) { 
-    			if (board[i][j] == maximizingPlayer) { 
-    				maximizingPlayerSpecial += valueBoard[i][j];
-    			} else if (board[i][j] == nonMaximizingPlayer) { 
-    				nonMaximizingPlayerSpecial += valueBoard[i][j];
+    	// If a certain corner is already taken, the positions around it lose their additional values
+    	for (int k = 0; k < corners.length; k++) {
+    		if (board[corners[k]] >= 0) {
+    			for (int square : cornerRegions[k]) {
+    				if (board[square] == player) {
+    					playerSpecial -= values[square];
+    				} else if (board[square] >= 0) {
+    					opponentSpecial -= values[square];
+    				}
     			}
     		}
     	}
 
-    	return maximizingPlayerSpecial - nonMaximizingPlayerSpecial;
+    	return playerSpecial - opponentSpecial;
+
+    }
+
+    /*
+     * Find the valid moves of a position, most promising squares first
+     * Good moves early make the null-window probes of the other moves fail quickly.
+     * The best move of an earlier search of the position, if there was one, goes first of all.
+     *
+     * @param  board  the packed board
+     * @param  moves  filled with the indices of the valid moves
+     * @param  tableMove  the best move found by an earlier search, -1 if none
+     * @return the number of valid moves
+     */
+    private int orderedMoves(byte[] board, int[] moves, int tableMove) {
+
+        int numMoves = layout.moves(board, moves);
+
+        // Insertion sort by positional value; stable, so equal squares keep board order
+        for (int i = 1; i < numMoves; i++) {
+            int move = moves[i];
+            int j = i - 1;
+            while (j >= 0 && values[moves[j]] < values[move]) {
+                moves[j + 1] = moves[j];
+                j--;
+            }
+            moves[j + 1] = move;
+        }
+
+        // Try the move from the transposition table first
+        for (int i = 1; i < numMoves; i++) {
+            if (moves[i] == tableMove) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = tableMove;
+                break;
+            }
+        }
+
+        return numMoves;
 
     }
 
@@ -245,13 +1396,13 @@ public class AI {
      * @param  player  the current player
      * @return an array list of coordinates of all possible moves
      */
-    private static ArrayList < int[] > allPossibleMoves(int[][] board, int player) {
+    static ArrayList < int[] > allPossibleMoves(int[][] board, int player) {
 
     	// All valid moves from the position
         ArrayList < int[] > moves = new ArrayList < int[] > ();
 
-        for (int i = 0; i < NUMROW; i++) {
-            for (int j = 0; j < NUMCOL; j++) {
+        for (int i = 0; i < board.length; i++) {
+            for (int j = 0; j < board[i].length; j++) {
                 if (validMove(board, i, j)) { // if the move is valid,
                     moves.add(new int[] {i, j}); // add it to the array of valid moves
                 }
@@ -281,184 +1432,81 @@ public class AI {
 
    /* 
     * Determine the board position after a move is made on the current board position
+    * This is the simple reference version of the rules; the search itself plays moves with PackedBoard.play.
+    * Each of the eight directions is flanked by the same small method, which the JIT compiler can inline.
     * 
     * @param  board  the current position of the board
     * @param  curPlayer  the player that made the move
     * @param  move  the move to be made
     * @return the new state of the board
     */
-    private static int[][] boardAfterMove(int[][] board, int curPlayer, int[] move) {
+    static int[][] boardAfterMove(int[][] board, int curPlayer, int[] move) {
 
     	// Set the variables for the coordinates
     	int row = move[0];
     	int col = move[1];
 
-        // Set enemy player
-        int enemy = (curPlayer + 1) % NUMPLAYER;
+        // Set the size of the board
+        int numRow = board.length;
+        int numCol = board[0].length;
 
         // Make a copy of the passed-in board
-        int[][] newBoard = new int[NUMROW][NUMCOL];
-        for (int i = 0; i < NUMROW; i++) {
-        	for (int j = 0; j < NUMCOL; j++) {
-        		newBoard[i][j] = board[i][j];
-        	}
+        int[][] newBoard = new int[numRow][numCol];
+        for (int i = 0; i < numRow; i++) {
+            System.arraycopy(board[i], 0, newBoard[i], 0, numCol);
         }
         board = newBoard;
 
         // Place a player piece on the move coordinates
         board[row][col] = curPlayer;
 
-        // Flanks: 
-        // Go right
-        int counter = col + 1;
-        while (counter < NUMCOL && board[row][counter] == enemy) { // Determine the coordinate at the end of the continuous line of enemy pieces
-            counter += 1;
-        }
-        if (counter < NUMCOL && board[row][counter] == curPlayer) { // Check if the end is a player piece
-            for (int i = col + 1; i < counter; i++) { // If so, flip the enemies in the line
-                board[row][i] = curPlayer;
-            }
+        // Flanks: right, left, down, up, then the diagonals
+        for (int d = 0; d < ROWSTEPS.length; d++) {
+            flipLine(board, row, col, ROWSTEPS[d], COLSTEPS[d], curPlayer);
         }
 
-        // Go left
-        counter = col - 1;
-        while (counter >= 0 && board[row][counter] == enemy) {
-            counter -= 1;
-        }
-        if (counter >= 0 && board[row][counter] == curPlayer) {
-            for (int i = col - 1; i >= counter; i--) {
-                board[row][i] = curPlayer;
+        // Indicators: place one on every empty slot around the piece placed
+        for (int d = 0; d < ROWSTEPS.length; d++) {
+            int r = row + ROWSTEPS[d];
+            int c = col + COLSTEPS[d];
+            if (r >= 0 && r < numRow && c >= 0 && c < numCol && board[r][c] == EMPTY) {
+                board[r][c] = INDICATOR;
             }
         }
 
-        // Go up
-        counter = row + 1;
-        while (counter < NUMROW && board[counter][col] == enemy) { // Determine the coordinate at the end of the continuous line of enemy pieces
-            counter += 1;
-        }
-        if (counter < NUMROW && board[counter][col] == curPlayer) { // Check if the end is a player piece
-            for (int i = row + 1; i < counter; i++) { // If so, flip the enemies in the line
-                board[i][col] = curPlayer;
-            }
-        }
-
-        // Go down
-        counter = row - 1;
-        while (counter >= 0 && board[counter][col] == enemy) {
-            counter -= 1;
-        }
-        if (counter >= 0 && board[counter][col] == curPlayer) {
-            for (int i = row - 1; i >= counter; i--) {
-                board[i][col] = curPlayer;
-            }
-        }
-
-        int numEnemies; // number of enemy pieces counted 
+        return board;
+        
+    }
 
-        // Go top left
-        //    Coordinates of the slot at the end of the line of enemies
-        int vertiCounter = row - 1;
-        int horiCounter = col - 1;
-        //    Find the longest line of enemies
-        while (vertiCounter >= 0 && horiCounter >= 0 && board[vertiCounter][horiCounter] == enemy) { // Determine the coordinates at the end of the continuous line of enemy pieces 
-            vertiCounter -= 1;
-            horiCounter -= 1;
-        }
-        numEnemies = row - vertiCounter - 1; // Number of enemy pieces counted (the number of pieces between the end and the beginning of the line)  
-        //    Outflank the line of enemies if surrounded          
-        if (vertiCounter >= 0 && horiCounter >= 0 && board[vertiCounter][horiCounter] == curPlayer) { // Check if the end is a player piece 
-            for (int i = 1; i <= numEnemies; i++) { // If so, flip the enemy pieces in the line
-                board[row - i][col - i] = curPlayer;
-            }
-        }
+    /*
+     * Flip the line of enemy pieces running from a new piece in one direction, if a piece of the player ends it
+     *
+     * @param  board  the board, with the new piece placed
+     * @param  row  the row of the new piece
+     * @param  col  the column of the new piece
+     * @param  rowStep  the step between the rows of the line (-1, 0 or 1)
+     * @param  colStep  the step between the columns of the line (-1, 0 or 1)
+     * @param  curPlayer  the player that made the move
+     */
+    private static void flipLine(int[][] board, int row, int col, int rowStep, int colStep, int curPlayer) {
 
-        // Go top right
-        vertiCounter = row - 1;
-        horiCounter = col + 1;
-        //    Find the longest line of enemies
-        while (vertiCounter >= 0 && horiCounter < NUMCOL && board[vertiCounter][horiCounter] == enemy) {
-            vertiCounter -= 1;
-            horiCounter += 1;
-        }
-        numEnemies = row - vertiCounter - 1;
-        //    Outflank the line of enemies if surrounded
-        if (vertiCounter >= 0 && horiCounter < NUMCOL && board[vertiCounter][horiCounter] == curPlayer) {
-            for (int i = 1; i <= numEnemies; i++) {
-                board[row - i][col + i] = curPlayer;
-            }
-        }
+        int enemy = (curPlayer + 1) % NUMPLAYER;
 
-        // Go bottom left
-        vertiCounter = row + 1;
-        horiCounter = col - 1;
-        //    Find the longest line of enemies
-        while (vertiCounter < NUMROW && horiCounter >= 0 && board[vertiCounter][horiCounter] == enemy) {
-            vertiCounter += 1;
-            horiCounter -= 1;
-        }
-        numEnemies = vertiCounter - row - 1;
-        //    Outflank the line of enemies if surrounded
-        if (vertiCounter < NUMROW && horiCounter >= 0 && board[vertiCounter][horiCounter] == curPlayer) {
-            for (int i = 1; i <= numEnemies; i++) {
-                board[row + i][col - i] = curPlayer;
-            }
+        // Find the end of the continuous line of enemy pieces
+        int r = row + rowStep;
+        int c = col + colStep;
+        while (r >= 0 && r < board.length && c >= 0 && c < board[0].length && board[r][c] == enemy) {
+            r += rowStep;
+            c += colStep;
         }
 
-        // Go bottom right
-        vertiCounter = row + 1;
-        horiCounter = col + 1;
-        //    Find the longest line of enemies
-        while (vertiCounter < NUMROW && horiCounter < NUMCOL && board[vertiCounter][horiCounter] == enemy) {
-            vertiCounter += 1;
-            horiCounter += 1;
-        }
-        numEnemies = vertiCounter - row - 1;
-        //    Outflank the line of enemies if surrounded
-        if (vertiCounter < NUMROW && horiCounter < NUMCOL && board[vertiCounter][horiCounter] == curPlayer) {
-            for (int i = 1; i <= numEnemies; i++) {
-                board[row + i][col + i] = curPlayer;
+        // Outflank the line if the end is a player piece
+        if (r >= 0 && r < board.length && c >= 0 && c < board[0].length && board[r][c] == curPlayer) {
+            for (int i = row + rowStep, j = col + colStep; i != r || j != c; i += rowStep, j += colStep) {
+                board[i][j] = curPlayer;
             }
         }
 
-        // Indicators:
-
-        // Does the slot have a row above it?
-        boolean top = row > 0;
-        // below?
-        boolean bot = row < NUMROW - 1;
-        // Does the slot have a column to its left?
-        boolean left = col > 0;
-        // right?
-        boolean right = col < NUMCOL - 1;
-
-        // Check if any slots around the piece placed are empty, if so place an indicator
-        if (top && board[row - 1][col] == EMPTY) { // Above
-            board[row - 1][col] = INDICATOR;
-        }
-        if (bot && board[row + 1][col] == EMPTY) { // Below
-            board[row + 1][col] = INDICATOR;
-        }
-        if (left && board[row][col - 1] == EMPTY) { // Left
-            board[row][col - 1] = INDICATOR;
-        }
-        if (right && board[row][col + 1] == EMPTY) { // Right
-            board[row][col + 1] = INDICATOR;
-        }
-        if ((top && left) && board[row - 1][col - 1] == EMPTY) { // Top left
-            board[row - 1][col - 1] = INDICATOR;
-        }
-        if ((top && right) && board[row - 1][col + 1] == EMPTY) { // Top right
-            board[row - 1][col + 1] = INDICATOR;
-        }
-        if ((bot && right) && board[row + 1][col + 1] == EMPTY) { // Bottom right
-            board[row + 1][col + 1] = INDICATOR;
-        }
-        if ((bot && left) && board[row + 1][col - 1] == EMPTY) { // Bottom left
-            board[row + 1][col - 1] = INDICATOR;
-        }
-
-        return board;
-        
     }
     
 }
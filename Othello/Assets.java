@@ -0,0 +1,177 @@
+/*
+ * Assets.java
+ *
+ * The images of the game, loaded once and shared by every window in the process.
+ * An image is looked up on the classpath first, so the images can ship inside a jar, then as a file, as config.txt
+ * has always named them relative to the working directory. Images are decoded in parallel on a pool of daemon
+ * threads while the window is built; until an image is ready, a plain placeholder of the same size stands in for it
+ * and is swapped for the image on the event dispatch thread.
+ */
+
+import javax.imageio.*;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.*;
+
+public class Assets {
+
+    private final static int DECODERS = Math.min(4, Runtime.getRuntime().availableProcessors()); // Threads decoding images
+    private final static Color PLACEHOLDERCOLOR = new Color(60, 60, 60); // Color of the placeholders
+
+    private final static Assets SHARED = new Assets(); // The assets of every window
+
+    private final ConcurrentHashMap < String, CompletableFuture < BufferedImage > > images; // The images by path, loaded or loading
+    private final ExecutorService decoders; // The threads that read and decode the images
+
+    /*
+     * Constructor: loads nothing until asked
+     */
+    private Assets() {
+
+        images = new ConcurrentHashMap < String, CompletableFuture < BufferedImage > > ();
+        decoders = Executors.newFixedThreadPool(DECODERS, runnable -> {
+            Thread thread = new Thread(runnable, "Assets");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ImageIO.setUseCache(false); // Decode in memory instead of through temporary files
+
+    }
+
+    /**
+     * Gives the assets shared by every window
+     *
+     * @return the shared assets
+     */
+    public static Assets shared() {
+
+        return SHARED;
+
+    }
+
+    /**
+     * Start loading images in the background, so they are ready sooner when asked for
+     *
+     * @param  paths  the paths of the images
+     */
+    public void preload(String... paths) {
+
+        for (String path : paths) {
+            load(path);
+        }
+
+    }
+
+    /**
+     * Gives an image, loading it in the background the first time it is asked for
+     * An image that cannot be read is reported and given as a placeholder.
+     *
+     * @param  path  the path of the image, on the classpath or as a file
+     * @return the image, once decoded
+     */
+    public CompletableFuture < BufferedImage > load(String path) {
+
+        return images.computeIfAbsent(path, key -> CompletableFuture.supplyAsync(() -> decode(key), decoders));
+
+    }
+
+    /**
+     * Gives whether an image has been decoded
+     *
+     * @param  path  the path of the image
+     * @return true if the image is ready
+     */
+    public boolean isReady(String path) {
+
+        return load(path).isDone();
+
+    }
+
+    /**
+     * Gives an icon of an image at its own size, which shows a placeholder until the image is ready
+     *
+     * @param  path  the path of the image
+     * @param  width  the width of the placeholder
+     * @param  height  the height of the placeholder
+     * @param  onReady  run on the event dispatch thread once the image is in the icon, to repaint it; may be null
+     * @return the icon
+     */
+    public ImageIcon icon(String path, int width, int height, Runnable onReady) {
+
+        CompletableFuture < BufferedImage > image = load(path);
+        if (image.isDone()) {
+            return new ImageIcon(image.join());
+        }
+
+        ImageIcon icon = new ImageIcon(placeholder(width, height));
+        image.thenAccept(loaded -> SwingUtilities.invokeLater(() -> {
+            icon.setImage(loaded);
+            if (onReady != null) {
+                onReady.run();
+            }
+        }));
+        return icon;
+
+    }
+
+    /**
+     * Gives an image if it is ready, otherwise a placeholder, without waiting
+     *
+     * @param  path  the path of the image
+     * @param  width  the width of the placeholder
+     * @param  height  the height of the placeholder
+     * @return the image or the placeholder
+     */
+    public Image imageNow(String path, int width, int height) {
+
+        CompletableFuture < BufferedImage > image = load(path);
+        return image.isDone() ? image.join() : placeholder(width, height);
+
+    }
+
+    /**
+     * Gives a placeholder for an image that is not ready: a dark rounded square
+     *
+     * @param  width  the width of the placeholder
+     * @param  height  the height of the placeholder
+     * @return the placeholder
+     */
+    public static BufferedImage placeholder(int width, int height) {
+
+        BufferedImage image = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(PLACEHOLDERCOLOR);
+        int arc = Math.min(width, height) / 4;
+        g.fillRoundRect(0, 0, width, height, arc, arc);
+        g.dispose();
+        return image;
+
+    }
+
+    /*
+     * Read and decode an image, from the classpath if it is there, otherwise from a file
+     *
+     * @param  path  the path of the image
+     * @return the image, or a small placeholder if it cannot be read
+     */
+    private static BufferedImage decode(String path) {
+
+        try {
+            URL resource = Assets.class.getClassLoader().getResource(path.replace(File.separatorChar, '/'));
+            BufferedImage image = resource != null ? ImageIO.read(resource) : ImageIO.read(new File(path));
+            if (image != null) {
+                return image;
+            }
+        } catch (IOException iox) {
+            // Reported below
+        }
+        System.out.println("Image " + path + " not found.");
+        return placeholder(1, 1);
+
+    }
+
+}
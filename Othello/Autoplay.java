@@ -0,0 +1,206 @@
+/*
+ * Autoplay.java
+ *
+ * Lets two engines play each other, game after game, until one of them wins the match.
+ * The games run on a background thread through Othello.play, as fast as the engines can move.
+ * Drawing is left to the GUI: after every move the thread publishes a snapshot of the game,
+ * and the GUI draws the latest snapshot on its own schedule, so the engines never wait for Swing.
+ */
+
+public class Autoplay {
+
+    private final Othello game; // The game being played
+    private final Engine[] engines; // The engine of each player
+    private final int[] strengths; // How hard each player's engine searches
+
+    private volatile boolean running; // Whether the playing thread is running
+    private volatile boolean playing; // Whether the playing thread should keep playing
+    private Thread thread; // The thread playing the games
+
+    private volatile int[][] board; // The board after the last move
+    private volatile int[] points; // The points after the last move
+    private volatile int[] scores; // The match scores after the last move
+    private volatile int player; // The player to move after the last move
+
+    private volatile long startTime; // When the games started
+    private volatile long games; // Number of games finished
+    private volatile long nodes; // Number of nodes (or playouts) searched
+
+    /**
+     * Constructor: pairs the engines up for a game
+     *
+     * @param  game  the game to play
+     * @param  engines  the engine of each player
+     * @param  strengths  how hard each player's engine searches
+     */
+    public Autoplay(Othello game, Engine[] engines, int[] strengths) {
+
+        this.game = game;
+        this.engines = engines.clone();
+        this.strengths = strengths.clone();
+        snapshot();
+
+    }
+
+    /**
+     * Start playing in the background; does nothing if already playing
+     *
+     * @param  onStop  run on the event dispatch thread when the playing stops, by stop() or at the end of the match
+     */
+    public synchronized void start(Runnable onStop) {
+
+        if (running) {
+            return;
+        }
+        running = true;
+        playing = true;
+        startTime = System.currentTimeMillis();
+        games = 0;
+        nodes = 0;
+
+        thread = new Thread(() -> {
+            play();
+            running = false;
+            javax.swing.SwingUtilities.invokeLater(onStop);
+        }, "Autoplay");
+        thread.setDaemon(true);
+        thread.start();
+
+    }
+
+    /**
+     * Stop playing after the current move and wait for it
+     */
+    public void stop() {
+
+        Thread player;
+        synchronized (this) {
+            playing = false;
+            player = thread;
+        }
+        for (Engine engine : engines) {
+            engine.stop();
+        }
+        if (player != null && player != Thread.currentThread()) {
+            try {
+                player.join();
+            } catch (InterruptedException ix) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+    /**
+     * Stop playing without waiting; used from the playing thread itself when the match is over
+     */
+    public void finish() {
+
+        playing = false;
+
+    }
+
+    /**
+     * Gives whether the games are being played; true until the playing thread has finished its last move
+     *
+     * @return true while playing
+     */
+    public boolean isRunning() {
+
+        return running;
+
+    }
+
+    /*
+     * Play moves until stopped
+     */
+    private void play() {
+
+        while (playing) {
+            int current = game.currentPlayer();
+            int[] move = engines[current].search(game.getBoard(), current, strengths[current]);
+            if (!playing || move == null) {
+                break;
+            }
+            nodes += engines[current].stats().nodes;
+            game.play(move);
+
+            // A new game has only the starting pieces
+            int[] newPoints = game.getPoints();
+            if (newPoints[0] + newPoints[1] == game.NUMINITIALCORDS) {
+                games++;
+            }
+            snapshot();
+        }
+
+    }
+
+    /*
+     * Publish the state of the game for the GUI to draw
+     */
+    private void snapshot() {
+
+        board = game.getBoard();
+        points = game.getPoints();
+        scores = game.getScores();
+        player = game.currentPlayer();
+
+    }
+
+    /**
+     * Gives the board after the last move
+     */
+    public int[][] board() {
+
+        return board;
+
+    }
+
+    /**
+     * Gives the points of each player after the last move
+     */
+    public int[] points() {
+
+        return points;
+
+    }
+
+    /**
+     * Gives the match score of each player after the last move
+     */
+    public int[] scores() {
+
+        return scores;
+
+    }
+
+    /**
+     * Gives the player to move after the last move
+     */
+    public int player() {
+
+        return player;
+
+    }
+
+    /**
+     * Gives the number of games finished per second since the start
+     */
+    public double gamesPerSecond() {
+
+        long millis = Math.max(1, System.currentTimeMillis() - startTime);
+        return games * 1000.0 / millis;
+
+    }
+
+    /**
+     * Gives the number of nodes (or playouts) searched per second since the start
+     */
+    public long nodesPerSecond() {
+
+        long millis = Math.max(1, System.currentTimeMillis() - startTime);
+        return nodes * 1000 / millis;
+
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * BackgroundTask.java
+ *
+ * Work an engine hands to an Executor (pondering, the extra MCTS threads) that can be waited for later.
+ * In the game every search shares one bounded pool (see GameDeck), so the work may still be queued
+ * when it is waited for, behind the very search that waits; work that has not started by then is dropped
+ * instead of waited for, and never runs. Outside the game the work gets a daemon thread of its own.
+ */
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class BackgroundTask {
+
+    /**
+     * Runs every piece of work on a new daemon thread, for engines that were not given a pool
+     */
+    public final static Executor OWNTHREAD = work -> {
+        Thread thread = new Thread(work);
+        thread.setDaemon(true);
+        thread.start();
+    };
+
+    private final Runnable work; // The work
+    private final AtomicBoolean claimed = new AtomicBoolean(); // Set by whichever comes first: the work starting or being dropped
+    private final CountDownLatch finished = new CountDownLatch(1); // Counted down when the work has run
+
+    /*
+     * Constructor: the work does not start until handed to an executor
+     */
+    private BackgroundTask(Runnable work) {
+
+        this.work = work;
+
+    }
+
+    /**
+     * Hand work to an executor
+     *
+     * @param  executor  the executor
+     * @param  work  the work
+     * @return the task, to wait for the work
+     */
+    public static BackgroundTask start(Executor executor, Runnable work) {
+
+        BackgroundTask task = new BackgroundTask(work);
+        executor.execute(task::run);
+        return task;
+
+    }
+
+    /**
+     * Wait for the work to finish; if it has not started yet, it never will
+     * The work must already have been told to stop, or this waits for all of it.
+     *
+     * @return true if the work ran, false if it was dropped
+     */
+    public boolean finish() {
+
+        if (claimed.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            finished.await();
+        } catch (InterruptedException ix) {
+            Thread.currentThread().interrupt();
+        }
+        return true;
+
+    }
+
+    /*
+     * Run the work unless it was dropped first
+     */
+    private void run() {
+
+        if (!claimed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            work.run();
+        } finally {
+            finished.countDown();
+        }
+
+    }
+
+}
@@ -0,0 +1,394 @@
+/*
+ * Bitboard.java
+ *
+ * The rules of the game on bitboards: one long per player, with bit (row * 8 + col) set for every piece the player has.
+ * They are the same rules as AI.boardAfterMove, but a move costs a few shifts instead of copying the board.
+ * The valid moves (the indicators) are the empty slots adjacent to any piece, so they are never stored.
+ */
+
+import java.lang.invoke.*;
+import java.nio.*;
+
+public class Bitboard {
+
+    private final static int NUMROW = 8; // Number of rows on the board
+    private final static int NUMCOL = 8; // Number of columns on the board
+
+    private final static int INDICATOR = -2; // Represents valid-move indicator
+    private final static int EMPTY = -1; // Represents an empty slot
+
+    /**
+     * Every slot on the board
+     */
+    public final static long FULL = -1L;
+
+    private final static long NOTFILEA = 0xfefefefefefefefeL; // Every slot except the first column
+    private final static long NOTFILEH = 0x7f7f7f7f7f7f7f7fL; // Every slot except the last column
+    private final static long INNER = 0x7e7e7e7e7e7e7e7eL; // Every slot except the first and last columns
+    private final static long FILEA = 0x0101010101010101L; // The first column
+    private final static long FIRSTLAST = 0xff000000000000ffL; // The first and last rows
+    private final static long CORNERS = 0x8100000000000081L; // The four corners
+
+    private final static VarHandle SLOTS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN); // Eight slots of a packed board at once
+    private final static long LOWBYTES = 0x0101010101010101L; // The lowest bit of every byte
+    private final static long LOWSEVEN = 0x7f7f7f7f7f7f7f7fL; // The low seven bits of every byte
+    private final static long HIGHBITS = 0x8080808080808080L; // The highest bit of every byte
+    private final static long GATHER = 0x0102040810204080L; // Moves the lowest bit of byte j to bit 56 + j
+    private final static long DOWNRIGHTEDGE = 0xff80808080808080L; // Slots with no neighbour down and to the right
+    private final static long UPLEFTEDGE = 0x01010101010101ffL; // Slots with no neighbour up and to the left
+    private final static long DOWNLEFTEDGE = 0xff01010101010101L; // Slots with no neighbour down and to the left
+    private final static long UPRIGHTEDGE = 0x80808080808080ffL; // Slots with no neighbour up and to the right
+
+    /**
+     * Number of directions a line of pieces can be flanked in
+     */
+    public final static int NUMDIRECTION = 8;
+
+    /*
+     * Shift every piece one slot in a direction, dropping pieces that would wrap around the board
+     *
+     * @param  pieces  the pieces to shift
+     * @param  direction  0 to 7: right, left, down, up, down right, down left, up right, up left
+     * @return the shifted pieces
+     */
+    public static long shift(long pieces, int direction) {
+
+        switch (direction) {
+            case 0: return (pieces << 1) & NOTFILEA; // Right
+            case 1: return (pieces >>> 1) & NOTFILEH; // Left
+            case 2: return pieces << 8; // Down
+            case 3: return pieces >>> 8; // Up
+            case 4: return (pieces << 9) & NOTFILEA; // Down right
+            case 5: return (pieces << 7) & NOTFILEH; // Down left
+            case 6: return (pieces >>> 7) & NOTFILEA; // Up right
+            default: return (pieces >>> 9) & NOTFILEH; // Up left
+        }
+
+    }
+
+    /*
+     * Find every slot adjacent to a piece
+     *
+     * @param  pieces  the pieces
+     * @return the slots next to the pieces, including ones that are occupied
+     */
+    public static long neighbours(long pieces) {
+
+        long result = 0;
+        for (int d = 0; d < NUMDIRECTION; d++) {
+            result |= shift(pieces, d);
+        }
+        return result;
+
+    }
+
+    /*
+     * Find the valid moves: every empty slot adjacent to a piece
+     *
+     * @param  own  the pieces of the player to move
+     * @param  opp  the pieces of the other player
+     * @return the valid moves
+     */
+    public static long moves(long own, long opp) {
+
+        long occupied = own | opp;
+        return neighbours(occupied) & ~occupied;
+
+    }
+
+    /*
+     * Find the enemy pieces that a move outflanks
+     *
+     * @param  own  the pieces of the player making the move
+     * @param  opp  the pieces of the other player
+     * @param  square  the slot the move is made on (row * 8 + col)
+     * @return the enemy pieces that are flipped
+     */
+    public static long flips(long own, long opp, int square) {
+
+        long move = 1L << square;
+        long flipped = 0;
+
+        for (int d = 0; d < NUMDIRECTION; d++) {
+            long line = 0; // The continuous line of enemy pieces
+            long x = shift(move, d);
+            while ((x & opp) != 0) {
+                line |= x;
+                x = shift(x, d);
+            }
+            if ((x & own) != 0) { // The line ends on a player piece
+                flipped |= line;
+            }
+        }
+
+        return flipped;
+
+    }
+
+    /*
+     * Find the moves that outflank at least one enemy piece: the legal moves of standard Othello
+     * Each direction is filled with constant shifts; enemy pieces on the first and last columns are left out
+     * of the sideways and diagonal lines, since a line can never run through them in those directions.
+     *
+     * @param  own  the pieces of the player to move
+     * @param  opp  the pieces of the other player
+     * @return the moves
+     */
+    public static long captures(long own, long opp) {
+
+        long empty = ~(own | opp);
+        long inner = opp & INNER;
+        return capturesLeft(own, inner, empty, 1) | capturesRight(own, inner, empty, 1)
+            | capturesLeft(own, opp, empty, 8) | capturesRight(own, opp, empty, 8)
+            | capturesLeft(own, inner, empty, 7) | capturesRight(own, inner, empty, 7)
+            | capturesLeft(own, inner, empty, 9) | capturesRight(own, inner, empty, 9);
+
+    }
+
+    /*
+     * Find the moves that outflank a line towards the higher bits
+     *
+     * @param  own  the pieces of the player to move
+     * @param  opp  the enemy pieces a line can run through
+     * @param  empty  the empty slots
+     * @param  step  the shift from one slot of a line to the next
+     * @return the moves
+     */
+    private static long capturesLeft(long own, long opp, long empty, int step) {
+
+        long line = (own << step) & opp; // Lines are at most six pieces long
+        line |= (line << step) & opp;
+        line |= (line << step) & opp;
+        line |= (line << step) & opp;
+        line |= (line << step) & opp;
+        line |= (line << step) & opp;
+        return (line << step) & empty;
+
+    }
+
+    /*
+     * Find the moves that outflank a line towards the lower bits
+     *
+     * @param  own  the pieces of the player to move
+     * @param  opp  the enemy pieces a line can run through
+     * @param  empty  the empty slots
+     * @param  step  the shift from one slot of a line to the next
+     * @return the moves
+     */
+    private static long capturesRight(long own, long opp, long empty, int step) {
+
+        long line = (own >>> step) & opp;
+        line |= (line >>> step) & opp;
+        line |= (line >>> step) & opp;
+        line |= (line >>> step) & opp;
+        line |= (line >>> step) & opp;
+        line |= (line >>> step) & opp;
+        return (line >>> step) & empty;
+
+    }
+
+    /*
+     * Find the slots whose whole line along each of the four axes is occupied; no move can ever be made on such a line
+     * Without a corner, a piece can only be stable on a full row and a full column (every line along an edge
+     * ends in corners), so if there is no such pair the diagonals are not worked out and there is nothing to check.
+     *
+     * @param  occupied  the occupied slots
+     * @param  full  filled with the full slots along the rows, the columns and the two diagonals
+     * @return false if no piece can be stable, in which case only the rows and columns are filled in
+     */
+    public static boolean fullLines(long occupied, long[] full) {
+
+        // Rows: fold each row onto its first slot, then spread the result back over the row
+        long rows = occupied & (occupied >>> 4);
+        rows &= rows >>> 2;
+        rows &= rows >>> 1;
+        full[0] = (rows & FILEA) * 0xffL;
+
+        // Columns: fold the board onto its first row, then spread it back over the board
+        long cols = occupied & (occupied >>> 32);
+        cols &= cols >>> 16;
+        cols &= cols >>> 8;
+        full[1] = (cols & 0xffL) * FILEA;
+        if ((occupied & CORNERS) == 0 && (full[0] == 0 || full[1] == 0)) {
+            return false;
+        }
+
+        // Diagonals: a slot is full if it is occupied and so is everything beyond it, both ways
+        full[2] = fullLeft(occupied, 9, DOWNRIGHTEDGE) & fullRight(occupied, 9, UPLEFTEDGE);
+        full[3] = fullLeft(occupied, 7, DOWNLEFTEDGE) & fullRight(occupied, 7, UPRIGHTEDGE);
+        return true;
+
+    }
+
+    /*
+     * Find the occupied slots from which every slot up to the edge towards the higher bits is occupied too
+     *
+     * @param  occupied  the occupied slots
+     * @param  step  the shift from one slot of a line to the next
+     * @param  edge  the slots at the end of the lines
+     * @return the slots
+     */
+    private static long fullLeft(long occupied, int step, long edge) {
+
+        long result = occupied & (edge | (occupied >>> step));
+        result &= edge | (result >>> step);
+        result &= edge | (result >>> step);
+        result &= edge | (result >>> step);
+        result &= edge | (result >>> step);
+        result &= edge | (result >>> step);
+        result &= edge | (result >>> step);
+        return result;
+
+    }
+
+    /*
+     * Find the occupied slots from which every slot up to the edge towards the lower bits is occupied too
+     *
+     * @param  occupied  the occupied slots
+     * @param  step  the shift from one slot of a line to the next
+     * @param  edge  the slots at the end of the lines
+     * @return the slots
+     */
+    private static long fullRight(long occupied, int step, long edge) {
+
+        long result = occupied & (edge | (occupied << step));
+        result &= edge | (result << step);
+        result &= edge | (result << step);
+        result &= edge | (result << step);
+        result &= edge | (result << step);
+        result &= edge | (result << step);
+        result &= edge | (result << step);
+        return result;
+
+    }
+
+    /*
+     * Find the stable pieces: pieces that can never be flipped
+     * A piece is stable if along each axis its line is full, it is on the edge, or it is next to a stable piece of its own.
+     * The stable pieces grow out from the corners until nothing changes.
+     *
+     * @param  own  the pieces to check
+     * @param  full  the full slots along each axis, from fullLines
+     * @return the stable pieces
+     */
+    public static long stable(long own, long[] full) {
+
+        // Pieces that are safe along an axis whatever happens: on a full line, or at the end of the line
+        long rows = own & (full[0] | ~INNER);
+        long cols = own & (full[1] | FIRSTLAST);
+        long downRight = own & (full[2] | ~INNER | FIRSTLAST);
+        long downLeft = own & (full[3] | ~INNER | FIRSTLAST);
+
+        long stable = rows & cols & downRight & downLeft;
+        if (stable == 0) { // Nothing to grow from
+            return 0;
+        }
+
+        long previous;
+        do {
+            previous = stable;
+            long sideways = rows | (stable << 1) | (stable >>> 1); // A piece wrapping around lands on an edge, which is safe anyway
+            long upDown = cols | (stable << 8) | (stable >>> 8);
+            long diagonal = downRight | (((stable << 9) & NOTFILEA) | ((stable >>> 9) & NOTFILEH));
+            long antiDiagonal = downLeft | (((stable << 7) & NOTFILEH) | ((stable >>> 7) & NOTFILEA));
+            stable |= own & sideways & upDown & diagonal & antiDiagonal;
+        } while (stable != previous);
+        return stable;
+
+    }
+
+    /*
+     * Read one player's pieces out of a board array
+     *
+     * @param  board  the state of the board
+     * @param  player  the player whose pieces to read
+     * @return the player's pieces
+     */
+    public static long fromBoard(int[][] board, int player) {
+
+        long pieces = 0;
+        for (int i = 0; i < NUMROW; i++) {
+            for (int j = 0; j < NUMCOL; j++) {
+                if (board[i][j] == player) {
+                    pieces |= 1L << (i * NUMCOL + j);
+                }
+            }
+        }
+        return pieces;
+
+    }
+
+    /*
+     * Read one player's pieces out of a packed 8x8 board (see PackedBoard), a row of eight slots at a time:
+     * the slots equal to the player become zero bytes, which are found and gathered into the row's eight bits
+     * without a branch, so the time does not depend on how the pieces lie
+     *
+     * @param  board  the packed board
+     * @param  first  the index of the first slot of the first row
+     * @param  width  the distance between two rows in the array
+     * @param  player  the player whose pieces to read
+     * @return the player's pieces
+     */
+    public static long fromPacked(byte[] board, int first, int width, int player) {
+
+        long pattern = player * LOWBYTES;
+        long pieces = 0;
+        for (int i = 0; i < NUMROW; i++) {
+            long slots = (long) SLOTS.get(board, first + i * width) ^ pattern;
+            long zero = ~(((slots & LOWSEVEN) + LOWSEVEN) | slots) & HIGHBITS; // The high bit of every zero byte
+            pieces |= ((zero >>> 7) * GATHER >>> 56) << (i * NUMCOL);
+        }
+        return pieces;
+
+    }
+
+    /*
+     * Build a board array, with its indicators, from the bitboards
+     *
+     * @param  pieces  the pieces of each player, indexed by player
+     * @return the state of the board
+     */
+    public static int[][] toBoard(long[] pieces) {
+
+        long indicators = moves(pieces[0], pieces[1]);
+        int[][] board = new int[NUMROW][NUMCOL];
+        for (int i = 0; i < NUMROW; i++) {
+            for (int j = 0; j < NUMCOL; j++) {
+                long bit = 1L << (i * NUMCOL + j);
+                board[i][j] = (indicators & bit) != 0 ? INDICATOR : EMPTY;
+                for (int p = 0; p < pieces.length; p++) {
+                    if ((pieces[p] & bit) != 0) {
+                        board[i][j] = p;
+                    }
+                }
+            }
+        }
+        return board;
+
+    }
+
+    /*
+     * Give the coordinates of a slot
+     *
+     * @param  square  the slot (row * 8 + col)
+     * @return the row and column of the slot
+     */
+    public static int[] toMove(int square) {
+
+        return new int[] {square / NUMCOL, square % NUMCOL};
+
+    }
+
+    /*
+     * Give the slot of a pair of coordinates
+     *
+     * @param  move  the row and column
+     * @return the slot (row * 8 + col)
+     */
+    public static int toSquare(int[] move) {
+
+        return move[0] * NUMCOL + move[1];
+
+    }
+
+}
@@ -0,0 +1,448 @@
+/*
+ * BoardView.java
+ *
+ * The game board as one component painted with Graphics2D, instead of a label per slot.
+ * It keeps what every slot shows (a player, an indicator or nothing), maps clicks to slots arithmetically
+ * and repaints only the slots that change.
+ * A flipped piece turns over in a short animation, driven by a timer at about 60 frames per second
+ * that repaints just the slots still turning.
+ * The icons come from an IconCache, scaled once the component stops resizing, and again once the images are decoded.
+ * The scores of a running search can be laid over the indicators as a heat map, best moves green and worst red;
+ * moves only proved to be no better than the best are greyed out with their bound.
+ */
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+
+public class BoardView extends JComponent {
+
+    private final static long serialVersionUID = 1L; // Version of the serialized form
+    private final static int SHOWINDICATOR = -2; // The slot displays an indicator
+    private final static int SHOWNOTHING = -1; // The slot displays nothing
+
+    private final static int FRAMEDELAY = 16; // Milliseconds between animation frames (about 60 per second)
+    private final static int FLIPTIME = 250; // Milliseconds a piece takes to turn over
+    private final static int RESIZEDELAY = 100; // Milliseconds without a resize before the icons are scaled
+
+    private final int numRow; // Number of rows on the board
+    private final int numCol; // Number of columns on the board
+    private final int numPlayer; // Number of players
+    private final Color lineColor = Color.white; // Color of the lines between the slots
+
+    private final int[][] shown; // What each slot displays: a player, SHOWINDICATOR or SHOWNOTHING
+    private final int[][] flippedFrom; // The player a turning piece used to belong to
+    private final long[][] flipStart; // When each piece started turning over, 0 if it is not turning
+    private int numFlipping; // Number of pieces turning over
+
+    private final IconCache iconCache; // The icons for every size used so far
+    private ImageIcon[] icons; // The player icons followed by the indicator icon, at iconSize
+    private int iconSize; // The size of the icons
+    private final Timer animationTimer; // Draws the next frame of the turning pieces
+    private final Timer resizeTimer; // Waits for the component to stop resizing
+
+    private final boolean[][] heated; // Whether each slot has a score in the heat map
+    private final int[][] heat; // The score of each slot in the heat map
+    private final boolean[][] bounded; // Whether the score of each slot is only an upper bound
+    private int minHeat; // The worst score in the heat map
+    private int maxHeat; // The best score in the heat map
+
+    /**
+     * Constructor: creates an empty board
+     *
+     * @param  numRow  the number of rows
+     * @param  numCol  the number of columns
+     * @param  numPlayer  the number of players
+     * @param  iconCache  the player icons followed by the indicator icon, at any size
+     * @param  slotSize  the preferred size of a slot
+     */
+    public BoardView(int numRow, int numCol, int numPlayer, IconCache iconCache, int slotSize) {
+
+        this.numRow = numRow;
+        this.numCol = numCol;
+        this.numPlayer = numPlayer;
+        this.iconCache = iconCache;
+
+        shown = new int[numRow][numCol];
+        flippedFrom = new int[numRow][numCol];
+        flipStart = new long[numRow][numCol];
+        heated = new boolean[numRow][numCol];
+        heat = new int[numRow][numCol];
+        bounded = new boolean[numRow][numCol];
+        for (int i = 0; i < numRow; i++) {
+            java.util.Arrays.fill(shown[i], SHOWNOTHING);
+        }
+
+        iconSize = slotSize;
+        icons = iconCache.get(slotSize);
+        if (!iconCache.isReady()) { // Placeholders for now: swap in the images once they are decoded
+            iconCache.whenReady(() -> iconCache.request(iconSize, scaled -> {
+                icons = scaled;
+                repaint();
+            }));
+        }
+        setPreferredSize(new Dimension(numCol * slotSize, numRow * slotSize));
+        setOpaque(true);
+
+        animationTimer = new Timer(FRAMEDELAY, e -> nextFrame());
+
+        // Once the component stops resizing, scale the icons to the new slot size in the background
+        resizeTimer = new Timer(RESIZEDELAY, e -> {
+            int side = slotSize();
+            if (side > 0 && side != iconSize) {
+                iconCache.request(side, scaled -> {
+                    iconSize = side;
+                    icons = scaled;
+                    repaint();
+                });
+            }
+        });
+        resizeTimer.setRepeats(false);
+        addComponentListener(new ComponentAdapter() {
+            public void componentResized(ComponentEvent e) {
+                resizeTimer.restart();
+            }
+        });
+
+    }
+
+    /**
+     * Stop the animation and the resize timers, once the board is no longer shown
+     */
+    public void stop() {
+
+        animationTimer.stop();
+        resizeTimer.stop();
+
+    }
+
+    /**
+     * Display a player's piece on a slot
+     * If the slot showed another player's piece, the piece turns over.
+     *
+     * @param  row  the row of the slot
+     * @param  col  the column of the slot
+     * @param  player  the player to display
+     */
+    public void setPiece(int row, int col, int player) {
+
+        if (shown[row][col] == player) { // Nothing changes
+            return;
+        }
+
+        if (shown[row][col] >= 0) { // Turn the piece over
+            if (flipStart[row][col] == 0) {
+                numFlipping++;
+            }
+            flippedFrom[row][col] = shown[row][col];
+            flipStart[row][col] = System.currentTimeMillis();
+            if (!animationTimer.isRunning()) {
+                animationTimer.start();
+            }
+        }
+
+        shown[row][col] = player;
+        repaintSlot(row, col);
+
+    }
+
+    /**
+     * Display an indicator on a slot
+     *
+     * @param  row  the row of the slot
+     * @param  col  the column of the slot
+     */
+    public void setIndicator(int row, int col) {
+
+        if (shown[row][col] != SHOWINDICATOR) {
+            shown[row][col] = SHOWINDICATOR;
+            repaintSlot(row, col);
+        }
+
+    }
+
+    /**
+     * Display nothing on a slot
+     *
+     * @param  row  the row of the slot
+     * @param  col  the column of the slot
+     */
+    public void setEmpty(int row, int col) {
+
+        if (shown[row][col] != SHOWNOTHING) {
+            if (flipStart[row][col] != 0) {
+                flipStart[row][col] = 0;
+                numFlipping--;
+            }
+            shown[row][col] = SHOWNOTHING;
+            repaintSlot(row, col);
+        }
+
+    }
+
+    /**
+     * Clear every slot
+     */
+    public void clear() {
+
+        for (int i = 0; i < numRow; i++) {
+            for (int j = 0; j < numCol; j++) {
+                if (shown[i][j] != SHOWNOTHING) {
+                    shown[i][j] = SHOWNOTHING;
+                    flipStart[i][j] = 0;
+                    repaintSlot(i, j);
+                }
+            }
+        }
+        numFlipping = 0;
+        animationTimer.stop();
+
+    }
+
+    /**
+     * Lay the root move scores of a search over the board, or take them off
+     * Only the slots whose score changes are repainted. The colors range over the exact scores only,
+     * since an upper bound can be far below the real score of its move.
+     *
+     * @param  analysis  the snapshot of the search, null to take the heat map off
+     */
+    public void setHeatMap(SearchAnalysis analysis) {
+
+        boolean[][] newHeated = new boolean[numRow][numCol];
+        int[][] newHeat = new int[numRow][numCol];
+        boolean[][] newBounded = new boolean[numRow][numCol];
+        int newMin = Integer.MAX_VALUE;
+        int newMax = Integer.MIN_VALUE;
+        if (analysis != null) {
+            for (int i = 0; i < analysis.moves.length; i++) {
+                if (analysis.searched[i]) {
+                    int[] move = analysis.moves[i];
+                    newHeated[move[0]][move[1]] = true;
+                    newHeat[move[0]][move[1]] = analysis.scores[i];
+                    newBounded[move[0]][move[1]] = !analysis.exact[i];
+                    if (analysis.exact[i]) {
+                        newMin = Math.min(newMin, analysis.scores[i]);
+                        newMax = Math.max(newMax, analysis.scores[i]);
+                    }
+                }
+            }
+        }
+
+        boolean rangeChanged = newMin != minHeat || newMax != maxHeat; // Every color changes
+        minHeat = newMin;
+        maxHeat = newMax;
+        for (int i = 0; i < numRow; i++) {
+            for (int j = 0; j < numCol; j++) {
+                if (newHeated[i][j] != heated[i][j] || newHeat[i][j] != heat[i][j] || newBounded[i][j] != bounded[i][j] || (heated[i][j] && rangeChanged)) {
+                    heated[i][j] = newHeated[i][j];
+                    heat[i][j] = newHeat[i][j];
+                    bounded[i][j] = newBounded[i][j];
+                    repaintSlot(i, j);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Gives the row of the slot at a point of the component
+     *
+     * @param  y  the vertical coordinate of the point
+     * @return the row, or -1 if the point is off the board
+     */
+    public int rowAt(int y) {
+
+        int side = slotSize();
+        int offset = y - originY(side);
+        return side > 0 && offset >= 0 && offset < numRow * side ? offset / side : -1;
+
+    }
+
+    /**
+     * Gives the column of the slot at a point of the component
+     *
+     * @param  x  the horizontal coordinate of the point
+     * @return the column, or -1 if the point is off the board
+     */
+    public int colAt(int x) {
+
+        int side = slotSize();
+        int offset = x - originX(side);
+        return side > 0 && offset >= 0 && offset < numCol * side ? offset / side : -1;
+
+    }
+
+    /**
+     * Paint the slots that intersect the area being repainted
+     *
+     * @param  graphics  the graphics context
+     */
+    protected void paintComponent(Graphics graphics) {
+
+        Graphics2D g = (Graphics2D) graphics;
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int side = slotSize();
+        if (side <= 0) {
+            return;
+        }
+        int x0 = originX(side);
+        int y0 = originY(side);
+
+        // The slots inside the clip
+        int firstRow = Math.max(0, (clip.y - y0) / side);
+        int lastRow = Math.min(numRow - 1, (clip.y + clip.height - y0) / side);
+        int firstCol = Math.max(0, (clip.x - x0) / side);
+        int lastCol = Math.min(numCol - 1, (clip.x + clip.width - x0) / side);
+
+        long now = System.currentTimeMillis();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+        for (int i = firstRow; i <= lastRow; i++) {
+            for (int j = firstCol; j <= lastCol; j++) {
+                int x = x0 + j * side;
+                int y = y0 + i * side;
+
+                if (shown[i][j] == SHOWINDICATOR) {
+                    drawIcon(g, icons[numPlayer], x, y, side, side);
+                } else if (shown[i][j] >= 0) {
+                    if (flipStart[i][j] != 0) { // Turning over: the old piece narrows, then the new one widens
+                        double progress = Math.min(1.0, (now - flipStart[i][j]) / (double) FLIPTIME);
+                        int player = progress < 0.5 ? flippedFrom[i][j] : shown[i][j];
+                        int width = (int) Math.round(side * Math.abs(1 - 2 * progress));
+                        drawIcon(g, icons[player], x + (side - width) / 2, y, width, side);
+                    } else {
+                        drawIcon(g, icons[shown[i][j]], x, y, side, side);
+                    }
+                }
+
+                if (heated[i][j]) {
+                    drawHeat(g, heat[i][j], bounded[i][j], x, y, side);
+                }
+
+                g.setColor(lineColor);
+                g.drawRect(x, y, side - 1, side - 1);
+            }
+        }
+
+    }
+
+    /*
+     * Draw the heat map over a slot: a see-through color from red (the worst score) to green (the best), and the score
+     * An upper bound is drawn in grey, as "<=" the bound, since it does not say how bad the move is.
+     *
+     * @param  g  the graphics context
+     * @param  score  the score of the slot
+     * @param  bound  whether the score is only an upper bound
+     * @param  x  the left of the slot
+     * @param  y  the top of the slot
+     * @param  side  the size of the slot
+     */
+    private void drawHeat(Graphics2D g, int score, boolean bound, int x, int y, int side) {
+
+        float position = maxHeat > minHeat ? (score - minHeat) / (float) (maxHeat - minHeat) : 1; // 0 for the worst, 1 for the best
+        Color color = bound ? Color.gray : Color.getHSBColor(position / 3, 1, 1); // Red to green
+        g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), 120));
+        g.fillRect(x, y, side, side);
+
+        String text = (bound ? "<=" : "") + score;
+        g.setFont(new Font("SansSerif", Font.BOLD, Math.max(9, side / 4)));
+        FontMetrics metrics = g.getFontMetrics();
+        g.setColor(Color.white);
+        g.drawString(text, x + (side - metrics.stringWidth(text)) / 2, y + (side + metrics.getAscent()) / 2 - 2);
+
+    }
+
+    /*
+     * Draw an icon scaled to a rectangle; drawn as is if it already has the size
+     *
+     * @param  g  the graphics context
+     * @param  icon  the icon
+     * @param  x  the left of the rectangle
+     * @param  y  the top of the rectangle
+     * @param  width  the width of the rectangle
+     * @param  height  the height of the rectangle
+     */
+    private void drawIcon(Graphics2D g, ImageIcon icon, int x, int y, int width, int height) {
+
+        if (width <= 0) {
+            return;
+        }
+        if (icon.getIconWidth() == width && icon.getIconHeight() == height) {
+            g.drawImage(icon.getImage(), x, y, null);
+        } else { // The scaled icons are not ready yet, or the piece is turning
+            g.drawImage(icon.getImage(), x, y, width, height, null);
+        }
+
+    }
+
+    /*
+     * Repaint the slots that are turning over, and stop the animation once none are
+     */
+    private void nextFrame() {
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < numRow; i++) {
+            for (int j = 0; j < numCol; j++) {
+                if (flipStart[i][j] != 0) {
+                    if (now - flipStart[i][j] >= FLIPTIME) { // Finished: draw it one last time
+                        flipStart[i][j] = 0;
+                        numFlipping--;
+                    }
+                    repaintSlot(i, j);
+                }
+            }
+        }
+        if (numFlipping == 0) {
+            animationTimer.stop();
+        }
+
+    }
+
+    /*
+     * Mark one slot as needing a repaint
+     *
+     * @param  row  the row of the slot
+     * @param  col  the column of the slot
+     */
+    private void repaintSlot(int row, int col) {
+
+        int side = slotSize();
+        repaint(originX(side) + col * side, originY(side) + row * side, side, side);
+
+    }
+
+    /*
+     * Gives the size of a slot: the largest that fits the board in the component
+     */
+    private int slotSize() {
+
+        return Math.min(getWidth() / numCol, getHeight() / numRow);
+
+    }
+
+    /*
+     * Gives the left edge of the board, which is centred in the component
+     */
+    private int originX(int side) {
+
+        return (getWidth() - numCol * side) / 2;
+
+    }
+
+    /*
+     * Gives the top edge of the board, which is centred in the component
+     */
+    private int originY(int side) {
+
+        return (getHeight() - numRow * side) / 2;
+
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * ConfigWatcher.java
+ *
+ * Watches the config file and reads it again whenever it changes, so settings can be changed while the game runs.
+ * The file's directory is watched with a WatchService on a background thread. After a change the watcher waits
+ * a moment for the editor to finish writing, then reads the whole file into a new GameConfig and hands it over.
+ * A file that cannot be read or has a bad value is reported and ignored; the old settings stay in use.
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.function.*;
+
+public class ConfigWatcher {
+
+    private final static int SETTLEDELAY = 200; // Milliseconds to wait after a change before reading the file
+
+    private final Path file; // The config file
+    private final Consumer < GameConfig > onChange; // Given every config read after a change
+    private WatchService watcher; // Reports the changes in the file's directory, null until started
+
+    /**
+     * Constructor: watches nothing until started
+     *
+     * @param  file  the config file
+     * @param  onChange  given every config read after a change, on the watching thread
+     */
+    public ConfigWatcher(Path file, Consumer < GameConfig > onChange) {
+
+        this.file = file.toAbsolutePath();
+        this.onChange = onChange;
+
+    }
+
+    /**
+     * Start watching the file on a daemon thread
+     */
+    public void start() throws IOException {
+
+        watcher = FileSystems.getDefault().newWatchService();
+        // Editors often write a new file and rename it over the old one, so creations count as changes too
+        file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+
+        Thread thread = new Thread(this::watch, "ConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+
+    }
+
+    /**
+     * Stop watching
+     */
+    public void stop() {
+
+        try {
+            watcher.close();
+        } catch (IOException iox) {
+            // Closed already
+        }
+
+    }
+
+    /*
+     * Wait for changes to the file and read it after each one, until stopped
+     */
+    private void watch() {
+
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent < ? > event : key.pollEvents()) {
+                    changed |= file.getFileName().equals(event.context());
+                }
+                key.reset();
+                if (!changed) {
+                    continue;
+                }
+
+                // Let the writing finish, and count the rest of the burst of events as the same change
+                Thread.sleep(SETTLEDELAY);
+                key = watcher.poll();
+                while (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                    key = watcher.poll();
+                }
+
+                try {
+                    onChange.accept(GameConfig.load(file));
+                } catch (IOException | IllegalArgumentException x) {
+                    System.out.println("Config not reloaded: " + x.getMessage());
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException x) {
+            // Stopped
+        }
+
+    }
+
+}
@@ -0,0 +1,476 @@
+/*
+ * DistributedSearch.java
+ *
+ * A minimax bot that spreads its search over SearchWorker processes, on this machine or on others.
+ * The root is split into work units, one per root move, searched by the workers to the full depth.
+ * Units are handed out like principal variation search: the first move is searched with the full window,
+ * then every other move with a null window at the best score so far. A move that beats it is searched again
+ * with the window above the best score. The window of each unit is taken when it is sent, so a worker
+ * gets the latest bound found by the others when it starts a unit. A unit already being searched keeps the window
+ * it was sent with: a better bound found meanwhile is not passed on, so the unit may search more than it needs to
+ * (its result is still right, as it is merged against the best score at that time).
+ * If a worker fails, its unit goes back to the front of the queue for another worker; if every worker
+ * has failed, the rest of the units are searched in this process.
+ * Stopping the search stops the unit each worker has in flight, by its id; a stopped unit is answered
+ * with STOPPED instead of a score, and any answer that is not for the unit in flight is ignored.
+ * In deterministic mode the result does not depend on which worker answers first: every move is searched
+ * with the full window by a worker with an empty table, and moves with the same score are told apart
+ * by their seeded rank (see AI.tieRank).
+ */
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+public class DistributedSearch implements Engine {
+
+    private final static int NUMPLAYER = 2; // Number of players
+
+    private final static int INFINITY = 1000000; // Bigger than any evaluation, safe to negate, as in AI
+    private final static int CONNECTTIMEOUT = 2000; // Milliseconds to wait for a worker to accept a connection
+
+    // The kinds of work unit
+    private final static int FULL = 0; // Search with the full window
+    private final static int PROBE = 1; // Prove with a null window that the move is no better than the best
+    private final static int RESEARCH = 2; // Find the score of a move that beat the best
+
+    private final String[] addresses; // host:port of every worker
+    private final ArrayList < Connection > connections = new ArrayList < Connection > (); // The workers connected to
+    private final AI local = new AI(); // Searches when no worker can
+    private volatile boolean stopped; // Set by stop() to end the search early
+    private SearchStats stats = new SearchStats(0, 0, 0); // Statistics of the last search
+    private int lastScore; // The score of the best move of the last search
+    private int nextId = 0; // The id of the next unit sent
+    private boolean deterministic; // Whether the result is independent of the timing of the workers
+    private long seed; // The seed of the tie-breaking ranks in deterministic mode
+
+    // The running search; guarded by the lock
+    private final Object lock = new Object();
+    private final LinkedList < Unit > pending = new LinkedList < Unit > (); // Units waiting for a worker
+    private int outstanding; // Units pending or being searched
+    private int liveWorkers; // Connections that have not failed
+    private int bestScore; // The best score of a root move so far
+    private int bestIndex; // The root move with the best score, -1 if none
+    private long[] ranks; // The tie-breaking rank of every root move in deterministic mode
+    private long nodes; // Nodes searched by the workers
+    private int generation; // Counts the searches, so late results of a stopped search are not merged into the next
+
+    /*
+     * A root move to be searched by a worker
+     */
+    private static class Unit {
+
+        final int index; // The root move
+        final int[][] board; // The position after the move
+        final int player; // The player to move after the move
+        final int depth; // The depth left after the move
+        final int kind; // FULL, PROBE or RESEARCH
+        final int generation; // The search the unit belongs to
+        int alpha; // The best score when the unit was sent
+
+        Unit(int index, int[][] board, int player, int depth, int kind, int generation) {
+            this.index = index;
+            this.board = board;
+            this.player = player;
+            this.depth = depth;
+            this.kind = kind;
+            this.generation = generation;
+        }
+
+        /*
+         * Give the same unit to be searched with another window
+         */
+        Unit as(int newKind) {
+            return new Unit(index, board, player, depth, newKind, generation);
+        }
+
+        /*
+         * Give the upper bound of the window of the root move
+         */
+        int beta() {
+            return kind == PROBE ? alpha + 1 : INFINITY;
+        }
+
+    }
+
+    /*
+     * A connection to a worker, and the thread that feeds it units
+     */
+    private class Connection implements Runnable {
+
+        final String address; // host:port of the worker
+        final Socket socket;
+        final BufferedReader in;
+        final PrintWriter out;
+        int inFlight = -1; // The id of the unit the worker is searching, -1 if none; guarded by the connection
+
+        Connection(String address) throws IOException {
+            this.address = address;
+            int split = address.lastIndexOf(':');
+            String host = split > 0 ? address.substring(0, split) : address;
+            int port = split > 0 ? Integer.parseInt(address.substring(split + 1)) : SearchWorker.DEFAULTPORT;
+            socket = new Socket();
+            socket.connect(new InetSocketAddress(host, port), CONNECTTIMEOUT);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8")));
+        }
+
+        /*
+         * Send units to the worker one at a time until the connection fails
+         */
+        public void run() {
+
+            while (true) {
+                Unit unit = take();
+                try {
+                    sendUnit(unit);
+                } catch (IOException iox) {
+                    fail(this, unit, iox);
+                    return;
+                }
+            }
+
+        }
+
+        /*
+         * Send a unit and wait for its result
+         * The child is searched from the opponent's point of view, so the window is negated.
+         */
+        private void sendUnit(Unit unit) throws IOException {
+
+            int id = nextId();
+            synchronized (this) {
+                out.println("SEARCH " + id + " " + PositionAnalyser.formatText(unit.board, unit.player) + " " + unit.depth + " " + (-unit.beta()) + " " + (-unit.alpha)
+                        + (deterministic ? " FRESH" : ""));
+                out.flush();
+                inFlight = id;
+            }
+
+            String line = in.readLine();
+            while (line != null && !line.startsWith("RESULT " + id + " ") && !line.equals("STOPPED " + id) && !line.startsWith("ERROR " + id + " ")) {
+                line = in.readLine(); // An answer to another unit, such as the late one of a stopped search
+            }
+            synchronized (this) {
+                inFlight = -1;
+            }
+            if (line == null) {
+                throw new EOFException("The worker closed the connection");
+            }
+            String[] fields = line.split(" ");
+            if (fields[0].equals("STOPPED")) {
+                drop(unit);
+            } else if (fields[0].equals("RESULT")) {
+                complete(unit, -Integer.parseInt(fields[2]), Long.parseLong(fields[3]));
+            } else {
+                throw new IOException("The worker could not search the unit: " + line);
+            }
+
+        }
+
+        /*
+         * Ask the worker to end the search of the unit in flight, if there is one
+         */
+        synchronized void stop() {
+
+            if (inFlight >= 0) {
+                out.println("STOP " + inFlight);
+                out.flush();
+            }
+
+        }
+
+    }
+
+    /*
+     * Constructor: the workers are connected to by the first search
+     *
+     * @param  addresses  host:port of every worker
+     */
+    public DistributedSearch(String[] addresses) {
+
+        this.addresses = addresses.clone();
+
+    }
+
+    /*
+     * Turns on deterministic mode: the same position and depth give the same move and score however the workers are timed
+     *
+     * @param  seed  the seed of the tie-breaking ranks
+     */
+    public void setDeterministic(long seed) {
+
+        deterministic = true;
+        this.seed = seed;
+        local.setDeterministic(seed);
+
+    }
+
+    /*
+     * Calculates the best move with the workers and returns it
+     *
+     * @param  board  the current state of the board
+     * @param  player  the current player
+     * @param  strength  the depth of the search
+     * @return coordinates of the best move
+     */
+    public int[] search(int[][] board, int player, int strength) {
+
+        long start = System.currentTimeMillis();
+        stopped = false;
+        local.clearStop();
+        connect();
+
+        ArrayList < int[] > moves = AI.allPossibleMoves(board, player);
+        if (moves.isEmpty()) { // The board is full
+            return null;
+        }
+        int depth = Math.max(1, strength); // The workers cut it down to the number of empty slots
+        int opponent = (player + 1) % NUMPLAYER;
+
+        synchronized (lock) {
+            generation++;
+            pending.clear();
+            outstanding = 0;
+            bestScore = -INFINITY;
+            bestIndex = -1;
+            nodes = 0;
+            ranks = new long[moves.size()];
+            for (int i = 0; i < ranks.length; i++) {
+                ranks[i] = AI.tieRank(seed, moves.get(i)[0], moves.get(i)[1]);
+            }
+
+            if (deterministic) { // Every move at once with the full window, so no window depends on which unit finished first
+                for (int i = 0; i < moves.size(); i++) {
+                    schedule(new Unit(i, AI.boardAfterMove(board, player, moves.get(i)), opponent, depth - 1, FULL, generation));
+                }
+            } else { // The first move on its own, then the others against its score
+                schedule(new Unit(0, AI.boardAfterMove(board, player, moves.get(0)), opponent, depth - 1, FULL, generation));
+                awaitUnits();
+                for (int i = 1; i < moves.size(); i++) {
+                    schedule(new Unit(i, AI.boardAfterMove(board, player, moves.get(i)), opponent, depth - 1, PROBE, generation));
+                }
+            }
+            awaitUnits();
+
+            pending.clear(); // Left over if the search was stopped
+            lastScore = bestScore;
+            stats = new SearchStats(nodes, depth, System.currentTimeMillis() - start);
+            return moves.get(Math.max(0, bestIndex));
+        }
+
+    }
+
+    /*
+     * Ends the running search early; search returns the best move found so far
+     */
+    public void stop() {
+
+        stopped = true;
+        local.stop();
+        synchronized (lock) {
+            for (Connection connection : connections) {
+                connection.stop();
+            }
+            lock.notifyAll();
+        }
+
+    }
+
+    /*
+     * Gives the score of the move returned by the last search
+     *
+     * @return the score for the player who was to move, -INFINITY if the search was stopped before any move had one
+     */
+    public int score() {
+
+        return lastScore;
+
+    }
+
+    /*
+     * Gives the statistics of the last search
+     *
+     * @return the nodes searched by all workers, the depth and the time taken
+     */
+    public SearchStats stats() {
+
+        return stats;
+
+    }
+
+    /*
+     * Connect to every worker that is not connected yet and start feeding it units
+     * Workers that cannot be reached are tried again by the next search.
+     */
+    private void connect() {
+
+        synchronized (lock) {
+            for (String address : addresses) {
+                boolean connected = false;
+                for (Connection connection : connections) {
+                    connected |= connection.address.equals(address);
+                }
+                if (connected) {
+                    continue;
+                }
+                try {
+                    Connection connection = new Connection(address);
+                    connections.add(connection);
+                    liveWorkers++;
+                    Thread thread = new Thread(connection);
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException iox) {
+                    System.out.println("Worker " + address + " not reachable: " + iox.getMessage());
+                }
+            }
+        }
+
+    }
+
+    /*
+     * Queue a unit for the workers; the lock must be held
+     *
+     * @param  unit  the unit
+     */
+    private void schedule(Unit unit) {
+
+        pending.addLast(unit);
+        outstanding++;
+        lock.notifyAll();
+
+    }
+
+    /*
+     * Wait for every queued unit to be searched, searching them here if no worker is left; the lock must be held
+     */
+    private void awaitUnits() {
+
+        while (outstanding > 0 && !stopped) {
+            if (liveWorkers == 0 && !pending.isEmpty()) {
+                Unit unit = pending.removeFirst();
+                unit.alpha = deterministic ? -INFINITY : bestScore;
+                int score = -local.searchWindow(unit.board, unit.player, unit.depth, -unit.beta(), -unit.alpha);
+                complete(unit, score, local.stats().nodes);
+            } else {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ix) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+    }
+
+    /*
+     * Wait for a unit to search and take it, with the window of the best score so far
+     * Nothing is taken while the search is stopped.
+     *
+     * @return the unit
+     */
+    private Unit take() {
+
+        synchronized (lock) {
+            while (pending.isEmpty() || stopped) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ix) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Unit unit = pending.removeFirst();
+            unit.alpha = deterministic ? -INFINITY : bestScore;
+            return unit;
+        }
+
+    }
+
+    /*
+     * Merge the result of a unit into the search
+     * A score above the unit's window is only a bound, so a probe that fails high is searched again.
+     *
+     * @param  unit  the unit
+     * @param  score  the score of the root move, a bound if it is outside of the unit's window
+     * @param  unitNodes  the nodes the unit took
+     */
+    private void complete(Unit unit, int score, long unitNodes) {
+
+        synchronized (lock) {
+            if (unit.generation != generation) { // The search it belongs to is over
+                return;
+            }
+            nodes += unitNodes;
+            if (!stopped && score > unit.alpha) {
+                if (unit.kind == PROBE) { // It beat the best move, so find its exact value
+                    pending.addFirst(unit.as(RESEARCH));
+                    lock.notifyAll();
+                    return; // Still outstanding
+                }
+                if (score > bestScore || (deterministic && score == bestScore && ranks[unit.index] < ranks[bestIndex])) {
+                    bestScore = score;
+                    bestIndex = unit.index;
+                }
+            }
+            outstanding--;
+            lock.notifyAll();
+        }
+
+    }
+
+    /*
+     * Give up on a unit a worker stopped before it had a score; only a stopped search stops units
+     *
+     * @param  unit  the unit
+     */
+    private void drop(Unit unit) {
+
+        synchronized (lock) {
+            if (unit.generation == generation) {
+                outstanding--;
+                lock.notifyAll();
+            }
+        }
+
+    }
+
+    /*
+     * Drop a failed worker and put its unit back for another one
+     *
+     * @param  connection  the failed connection
+     * @param  unit  the unit it was searching
+     * @param  iox  what went wrong
+     */
+    private void fail(Connection connection, Unit unit, IOException iox) {
+
+        System.out.println("Worker " + connection.address + " failed: " + iox.getMessage());
+        synchronized (lock) {
+            connections.remove(connection);
+            liveWorkers--;
+            if (unit.generation == generation) {
+                pending.addFirst(unit);
+            }
+            lock.notifyAll();
+        }
+        try {
+            connection.socket.close();
+        } catch (IOException closex) {
+            // Already closed
+        }
+
+    }
+
+    /*
+     * Give the id of the next unit sent
+     *
+     * @return a number no unit has had before
+     */
+    private synchronized int nextId() {
+
+        return nextId++;
+
+    }
+
+}
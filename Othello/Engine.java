@@ -0,0 +1,71 @@
+/*
+ * Engine.java
+ *
+ * A game bot that can be asked for the best move in a position.
+ * The strength is engine specific: the search depth for AI (minimax), the time in milliseconds for MCTS.
+ * Which engine the GUI uses, and its strengths, are set in the engine section of the config file (see GameConfig.createEngine).
+ */
+
+import java.util.concurrent.*;
+
+public interface Engine {
+
+    /**
+     * Calculates the best move and returns it
+     *
+     * @param  board  the current state of the board
+     * @param  player  the current player
+     * @param  strength  how hard to search, in the engine's own unit
+     * @return coordinates of the best move
+     */
+    int[] search(int[][] board, int player, int strength);
+
+    /**
+     * Ends the running search early; search still returns a valid move
+     */
+    void stop();
+
+    /**
+     * Starts searching on the opponent's time, in the background, until the next search or stop
+     * Engines that cannot ponder ignore this.
+     *
+     * @param  board  the state of the board, with the opponent to move
+     * @param  opponent  the player whose turn it is
+     * @param  strength  the strength the next search will be made with
+     */
+    default void ponder(int[][] board, int opponent, int strength) {
+    }
+
+    /**
+     * Stops pondering, if the engine is, and waits for it; a running search is left alone
+     */
+    default void stopPondering() {
+    }
+
+    /**
+     * Sets where the engine runs its work in the background (pondering, extra searching threads)
+     * instead of starting threads of its own. Engines without such work ignore this.
+     *
+     * @param  executor  the executor, such as the search pool shared by the games
+     */
+    default void setExecutor(Executor executor) {
+    }
+
+    /**
+     * Gives the latest snapshot of the running (or last) search, for display; safe to call from any thread
+     * Engines that do not publish an analysis return null.
+     *
+     * @return the snapshot, or null if there is none
+     */
+    default SearchAnalysis analysis() {
+        return null;
+    }
+
+    /**
+     * Gives the statistics of the last search
+     *
+     * @return the statistics of the last search
+     */
+    SearchStats stats();
+
+}
@@ -0,0 +1,122 @@
+/*
+ * EventLog.java
+ *
+ * Shows what happens in the game without stopping it: the latest event as a notification that clears itself
+ * after a few seconds, and every event in a scrolling log below it.
+ * Events can be posted from any thread; they are queued and a timer on the event dispatch thread
+ * adds them to the display in batches, so a fast game is never held up by the display.
+ */
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.*;
+
+public class EventLog extends JPanel {
+
+    private final static long serialVersionUID = 1L; // Version of the serialized form
+    private final static int UPDATEDELAY = 100; // Milliseconds between updates of the display
+    private final static int TOASTTIME = 2500; // Milliseconds a notification stays up
+    private final static int MAXLINES = 500; // Number of events kept in the log
+
+    private final ConcurrentLinkedQueue < Object[] > pending; // Events not displayed yet: {text, icon}
+    private final JLabel toast; // The latest event
+    private final JTextArea log; // Every event
+    private final Timer timer; // Adds the posted events to the display
+    private long toastTime; // When the latest notification went up, 0 if none is up
+    private int numLines; // Number of events in the log
+
+    /**
+     * Constructor: creates an empty notification and log
+     *
+     * @param  background  the background color
+     * @param  textcolor  the text color
+     */
+    public EventLog(Color background, Color textcolor) {
+
+        pending = new ConcurrentLinkedQueue < Object[] > ();
+
+        setLayout(new BorderLayout());
+        setBackground(background);
+
+        toast = new JLabel(" ", JLabel.CENTER);
+        toast.setFont(new Font("Serif", Font.BOLD, 16));
+        toast.setForeground(textcolor);
+        add(toast, BorderLayout.NORTH);
+
+        log = new JTextArea();
+        log.setEditable(false);
+        log.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        log.setBackground(background);
+        log.setForeground(textcolor);
+        JScrollPane scrollPane = new JScrollPane(log);
+        scrollPane.setBorder(null);
+        add(scrollPane, BorderLayout.CENTER);
+
+        timer = new Timer(UPDATEDELAY, e -> update());
+        timer.start();
+
+    }
+
+    /**
+     * Post an event; returns at once, the event is displayed within a moment
+     *
+     * @param  text  what happened
+     * @param  icon  shown with the notification, may be null
+     */
+    public void post(String text, Icon icon) {
+
+        pending.add(new Object[] {text, icon});
+
+    }
+
+    /**
+     * Stop updating the display, once the log is no longer shown; events posted after this are not displayed
+     */
+    public void stop() {
+
+        timer.stop();
+
+    }
+
+    /*
+     * Display the posted events and take the notification down once it has been up long enough
+     */
+    private void update() {
+
+        Object[] latest = null;
+        StringBuilder lines = new StringBuilder();
+        Object[] event = pending.poll();
+        while (event != null) {
+            lines.append(event[0]).append('\n');
+            numLines++;
+            latest = event;
+            event = pending.poll();
+        }
+
+        long now = System.currentTimeMillis();
+        if (latest != null) {
+            log.append(lines.toString());
+            // Drop the oldest events
+            if (numLines > MAXLINES) {
+                try {
+                    log.replaceRange("", 0, log.getLineStartOffset(numLines - MAXLINES));
+                    numLines = MAXLINES;
+                } catch (javax.swing.text.BadLocationException blx) {
+                    log.setText("");
+                    numLines = 0;
+                }
+            }
+            log.setCaretPosition(log.getDocument().getLength());
+
+            toast.setText((String) latest[0]);
+            toast.setIcon((Icon) latest[1]);
+            toastTime = now;
+        } else if (toastTime != 0 && now - toastTime > TOASTTIME) {
+            toast.setText(" ");
+            toast.setIcon(null);
+            toastTime = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,385 @@
+/*
+ * GameConfig.java
+ *
+ * The settings of config.txt, read and checked once into typed fields.
+ * The file starts with the number of games needed to win the match and the image paths, one per line:
+ * the banner, the two players, the valid-move indicator and the two computer buttons.
+ * The engine section follows, one setting per line as name=value (see createEngine for the engine's own settings).
+ * A config is immutable, so a new one can be read while the game runs and handed over in one step (see ConfigWatcher).
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class GameConfig {
+
+    private final static int NUMPLAYER = 2; // Number of players
+    private final static List < String > ENGINES = Arrays.asList("minimax", "mcts", "distributed"); // The engines createEngine makes
+
+    /**
+     * Number of games needed to be won to win the match
+     */
+    public final int maxGame;
+
+    /**
+     * The image paths: the banner, each player, the indicator and the two computer buttons
+     */
+    public final String bannerFile;
+    public final String[] playerIconFiles;
+    public final String indicatorIconFile;
+    public final String computerIconFile;
+    public final String computerIconHardFile;
+
+    /**
+     * The engine of the computer buttons: minimax, mcts or distributed
+     */
+    public final String engine;
+
+    /**
+     * The engine and the strength of each side in autoplay (by default the engine above, at the easy and the hard strength)
+     */
+    public final String[] autoplayEngines;
+    public final int[] autoplayStrengths;
+
+    /**
+     * How hard the computer buttons search (the depth for minimax, milliseconds for mcts)
+     */
+    public final int easyStrength;
+    public final int hardStrength;
+
+    /**
+     * Whether the engine searches while the human thinks
+     */
+    public final boolean ponder;
+
+    /**
+     * Whether minimax prunes with Multi-ProbCut
+     */
+    public final boolean probCut;
+
+    /**
+     * The size of the minimax transposition table (2 to the power of this many slots), 0 for the engine's default
+     */
+    public final int tableBits;
+
+    /**
+     * The most nodes of corner and edge moves minimax searches past each horizon node, 0 for none, -1 for the engine's default
+     */
+    public final int quiescence;
+
+    /**
+     * The UCT exploration constant of mcts, 0 for the engine's default
+     */
+    public final double exploration;
+
+    /**
+     * The number of searching threads of mcts, 0 for one per processor
+     */
+    public final int threads;
+
+    /**
+     * host:port of every SearchWorker of the distributed engine
+     */
+    public final String[] workers;
+
+    /**
+     * The seed that makes minimax and distributed searches reproducible, null for none
+     */
+    public final Long seed;
+
+    /**
+     * The file every root move minimax searches is logged to, null for none
+     */
+    public final String trace;
+
+    /**
+     * The number of rows and columns on the board
+     */
+    public final int boardSize;
+
+    /**
+     * Milliseconds between frames drawn during autoplay
+     */
+    public final int frameBudget;
+
+    /**
+     * Where the match is saved after every move, null if it is not saved
+     * The games after the first save to the same name numbered, as match-2.sav (see saveFile(int)).
+     */
+    public final Path saveFile;
+
+    /**
+     * The number of games opened at startup, and whether they are tiled side by side instead of tabbed
+     */
+    public final int games;
+    public final boolean tiled;
+
+    /**
+     * The number of computer moves searched at once over every game, 0 for one per processor
+     */
+    public final int searchThreads;
+
+    /**
+     * Whether the search is run in the background at startup, so the first computer move is searched at full speed
+     */
+    public final boolean warmUp;
+
+    private final Map < String, String > settings; // The whole engine section, to tell what changed
+
+    /*
+     * Constructor: reads the typed settings out of the engine section and checks them
+     */
+    private GameConfig(int maxGame, String[] images, Map < String, String > settings) {
+
+        if (maxGame < 1) {
+            throw new IllegalArgumentException("The match needs at least one game to win: " + maxGame);
+        }
+        this.maxGame = maxGame;
+        bannerFile = images[0];
+        playerIconFiles = new String[] {images[1], images[2]};
+        indicatorIconFile = images[3];
+        computerIconFile = images[4];
+        computerIconHardFile = images[5];
+
+        engine = settings.getOrDefault("engine", "minimax");
+        easyStrength = intSetting(settings, "easy", 2);
+        hardStrength = intSetting(settings, "hard", 4);
+        if (!ENGINES.contains(engine)) {
+            throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+        autoplayEngines = new String[NUMPLAYER];
+        autoplayStrengths = new int[NUMPLAYER];
+        for (int i = 0; i < NUMPLAYER; i++) {
+            autoplayEngines[i] = settings.getOrDefault("engine" + (i + 1), engine);
+            if (!ENGINES.contains(autoplayEngines[i])) {
+                throw new IllegalArgumentException("Unknown engine" + (i + 1) + ": " + autoplayEngines[i]);
+            }
+            autoplayStrengths[i] = intSetting(settings, "strength" + (i + 1), i == 0 ? easyStrength : hardStrength);
+        }
+        ponder = Boolean.parseBoolean(settings.getOrDefault("ponder", "false"));
+        probCut = Boolean.parseBoolean(settings.getOrDefault("probcut", "false"));
+        tableBits = intSetting(settings, "tablebits", 0);
+        quiescence = intSetting(settings, "quiescence", -1);
+        threads = intSetting(settings, "threads", 0);
+        if (threads < 0) {
+            throw new IllegalArgumentException("threads cannot be negative: " + threads);
+        }
+        workers = settings.getOrDefault("workers", "localhost:" + SearchWorker.DEFAULTPORT).split("\\s*,\\s*");
+        trace = settings.get("trace");
+        frameBudget = intSetting(settings, "framebudget", 100);
+        saveFile = settings.containsKey("savefile") ? Paths.get(settings.get("savefile")) : null;
+        games = intSetting(settings, "games", 1);
+        if (games < 1) {
+            throw new IllegalArgumentException("There must be at least one game: " + games);
+        }
+        String layout = settings.getOrDefault("layout", "tabs");
+        if (!layout.equals("tabs") && !layout.equals("tiles")) {
+            throw new IllegalArgumentException("layout is tabs or tiles, not " + layout);
+        }
+        tiled = layout.equals("tiles");
+        searchThreads = intSetting(settings, "searchthreads", 0);
+        warmUp = Boolean.parseBoolean(settings.getOrDefault("warmup", "true"));
+
+        try {
+            seed = settings.containsKey("seed") ? Long.valueOf(settings.get("seed")) : null;
+        } catch (NumberFormatException nfx) {
+            throw new IllegalArgumentException("seed is not a whole number: " + settings.get("seed"));
+        }
+        try {
+            exploration = Double.parseDouble(settings.getOrDefault("exploration", "0"));
+        } catch (NumberFormatException nfx) {
+            throw new IllegalArgumentException("exploration is not a number: " + settings.get("exploration"));
+        }
+
+        int size = intSetting(settings, "size", 8);
+        if (size < PackedBoard.MINSIZE || size > PackedBoard.MAXSIZE || size % 2 != 0) {
+            System.out.println("Board size must be even and between " + PackedBoard.MINSIZE + " and " + PackedBoard.MAXSIZE + ".");
+            size = 8;
+        }
+        boardSize = size;
+        settings.put("size", boardSize + "");
+
+        this.settings = Collections.unmodifiableMap(settings);
+
+    }
+
+    /**
+     * Read a config file
+     *
+     * @param  file  the config file
+     * @return the config
+     */
+    public static GameConfig load(Path file) throws IOException {
+
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            int maxGame = Integer.parseInt(requireLine(in)); // The number of games a player needs to win to win the match
+            String[] images = new String[NUMPLAYER + 4];
+            for (int i = 0; i < images.length; i++) {
+                images[i] = requireLine(in);
+            }
+
+            // The engine section
+            Map < String, String > settings = new HashMap < String, String > ();
+            String line = in.readLine();
+            while (line != null) {
+                int split = line.indexOf('=');
+                if (split > 0) {
+                    settings.put(line.substring(0, split).trim(), line.substring(split + 1).trim());
+                }
+                line = in.readLine();
+            }
+            return new GameConfig(maxGame, images, settings);
+        } catch (NumberFormatException nfx) {
+            throw new IllegalArgumentException("The first line is not the number of games to win: " + nfx.getMessage());
+        }
+
+    }
+
+    /*
+     * Read the next line, which must be there
+     */
+    private static String requireLine(BufferedReader in) throws IOException {
+
+        String line = in.readLine();
+        if (line == null) {
+            throw new EOFException("The config file ends before the image paths");
+        }
+        return line.trim();
+
+    }
+
+    /*
+     * Read a whole number setting
+     *
+     * @param  settings  the engine section
+     * @param  name  the name of the setting
+     * @param  fallback  the value if the setting is not there
+     * @return the value
+     */
+    private static int intSetting(Map < String, String > settings, String name, int fallback) {
+
+        if (!settings.containsKey(name)) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(settings.get(name));
+        } catch (NumberFormatException nfx) {
+            throw new IllegalArgumentException(name + " is not a whole number: " + settings.get(name));
+        }
+
+    }
+
+    /**
+     * Creates an engine from the settings; settings that do not apply to the engine are ignored
+     *   engine: minimax (the default), mcts or distributed (minimax on SearchWorker processes)
+     *   probcut: true to turn on Multi-ProbCut pruning (minimax)
+     *   tablebits: the transposition table has 2 to the power of this many slots (minimax)
+     *   quiescence: the most plies of corner and edge moves searched past the horizon, 0 for none (minimax)
+     *   exploration: the UCT exploration constant (mcts)
+     *   threads: the number of searching threads, one per processor if 0 or not set (mcts)
+     *   workers: host:port of every SearchWorker, separated by commas (distributed)
+     *   seed: makes every search reproducible, breaking ties between moves by ranks from this seed (minimax, distributed)
+     *   trace: a file every root move searched is logged to (minimax)
+     *
+     * @param  name  the engine: this config's engine, or one of the autoplay engines
+     * @param  size  the number of rows and columns of the board; mcts only plays on 8x8 boards
+     * @return the engine
+     */
+    public Engine createEngine(String name, int size) {
+
+        if (name.equals("mcts")) {
+            if (size != 8) { // The playouts run on 64-bit bitboards
+                throw new IllegalArgumentException("The mcts engine only plays on 8x8 boards");
+            }
+            MCTS mcts = new MCTS();
+            if (exploration > 0) {
+                mcts.setExploration(exploration);
+            }
+            mcts.setNumThreads(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+            return mcts;
+        } else if (name.equals("minimax")) {
+            AI ai = new AI();
+            ai.setProbCut(probCut);
+            if (tableBits > 0) {
+                ai.setTableBits(tableBits);
+            }
+            if (quiescence >= 0) {
+                ai.setQuiescence(quiescence);
+            }
+            if (seed != null) {
+                ai.setDeterministic(seed);
+            }
+            if (trace != null) {
+                try {
+                    ai.setTrace(new PrintWriter(new FileWriter(trace, true), true));
+                } catch (IOException iox) {
+                    System.out.println("Trace file " + trace + " not opened: " + iox.getMessage());
+                }
+            }
+            return ai;
+        } else if (name.equals("distributed")) {
+            DistributedSearch distributed = new DistributedSearch(workers);
+            if (seed != null) {
+                distributed.setDeterministic(seed);
+            }
+            return distributed;
+        } else {
+            throw new IllegalArgumentException("Unknown engine: " + name);
+        }
+
+    }
+
+    /**
+     * Gives where a game saves its match: the save file for the first game, numbered for the others
+     *
+     * @param  number  the number of the game, from 1
+     * @return the save file of the game, null if matches are not saved
+     */
+    public Path saveFile(int number) {
+
+        if (saveFile == null || number == 1) {
+            return saveFile;
+        }
+        String name = saveFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String numbered = dot > 0 ? name.substring(0, dot) + "-" + number + name.substring(dot) : name + "-" + number;
+        return saveFile.resolveSibling(numbered);
+
+    }
+
+    /**
+     * Gives whether changing from this config to another one needs a restart:
+     * the board, the length of the match, the images and the games are set up once when the game starts
+     *
+     * @param  other  the new config
+     * @return true if a setting that only takes effect on restart is different
+     */
+    public boolean needsRestart(GameConfig other) {
+
+        return maxGame != other.maxGame || boardSize != other.boardSize || !bannerFile.equals(other.bannerFile)
+                || !Arrays.equals(playerIconFiles, other.playerIconFiles) || !indicatorIconFile.equals(other.indicatorIconFile)
+                || !computerIconFile.equals(other.computerIconFile) || !computerIconHardFile.equals(other.computerIconHardFile)
+                || games != other.games || tiled != other.tiled || searchThreads != other.searchThreads;
+
+    }
+
+    /**
+     * Gives whether the engines made from this config and another one would differ
+     *
+     * @param  other  the new config
+     * @return true if the engine section is different, apart from the settings the GUI reads itself
+     */
+    public boolean engineChanged(GameConfig other) {
+
+        Map < String, String > mine = new HashMap < String, String > (settings);
+        Map < String, String > theirs = new HashMap < String, String > (other.settings);
+        for (String guiSetting : new String[] {"easy", "hard", "ponder", "framebudget", "savefile", "games", "layout", "searchthreads", "warmup"}) {
+            mine.remove(guiSetting);
+            theirs.remove(guiSetting);
+        }
+        return !mine.equals(theirs);
+
+    }
+
+}
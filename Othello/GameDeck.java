@@ -0,0 +1,188 @@
+/*
+ * GameDeck.java
+ *
+ * The window of every game played in the process, as tabs or tiled side by side, so one machine can show
+ * many games without a JVM for each. Every game has its own board, match and engine; what they have in common
+ * is kept here once: the config and its watcher, the scaled board icons (the images themselves are in Assets),
+ * and a bounded pool of threads that searches the computer moves of all the games, so a room full of games
+ * asking for moves at once queues instead of starting a thread each. The engines run their background work
+ * (pondering, the extra MCTS threads) on the same pool; pondering gives way whenever a move is asked for.
+ */
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class GameDeck {
+
+    private final static int NUMPLAYER = 2; // Number of players
+
+    private final JFrame frame; // The window
+    private final JTabbedPane tabs; // The games as tabs, null if they are tiled
+    private final JPanel tiles; // The games side by side, null if they are tabbed
+    private final ArrayList < OthelloGUI > games = new ArrayList < OthelloGUI > (); // The open games
+    private final GameConfig config; // The config the games started with
+    private final IconCache iconCache; // The board icons of every game
+    private final ExecutorService searches; // Searches the computer moves of every game
+    private final WarmUp warmUp; // Runs the search until the first computer move, null if the config turns it off
+    private ConfigWatcher configWatcher; // Reads the config file again when it changes
+    private int lastNumber; // The number of the last game opened
+
+    /**
+     * Constructor: opens the window with the games of the config
+     *
+     * @param  config  the config the games start with
+     * @param  configFile  the config file, watched for changes
+     */
+    public GameDeck(GameConfig config, Path configFile) {
+
+        this.config = config;
+
+        String[] boardImages = new String[NUMPLAYER + 1]; // The players, then the indicator
+        for (int i = 0; i < NUMPLAYER; i++) {
+            boardImages[i] = config.playerIconFiles[i];
+        }
+        boardImages[NUMPLAYER] = config.indicatorIconFile;
+        iconCache = new IconCache(Assets.shared(), boardImages);
+
+        int threads = config.searchThreads > 0 ? config.searchThreads : Runtime.getRuntime().availableProcessors();
+        searches = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Search");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Get the search compiled while the window is built and the first moves are played
+        if (config.warmUp) {
+            warmUp = new WarmUp(config.boardSize);
+            warmUp.start();
+        } else {
+            warmUp = null;
+        }
+
+        frame = new JFrame("Othello");
+        JPanel panel = (JPanel) frame.getContentPane();
+        panel.setLayout(new BorderLayout());
+        if (config.tiled) {
+            tabs = null;
+            tiles = new JPanel(new GridLayout(0, (int) Math.ceil(Math.sqrt(config.games))));
+            panel.add(tiles, BorderLayout.CENTER);
+        } else {
+            tabs = new JTabbedPane();
+            tiles = null;
+            panel.add(tabs, BorderLayout.CENTER);
+        }
+
+        // The button that opens another game
+        JButton newGameButton = new JButton("NEW GAME");
+        newGameButton.addActionListener(e -> addGame());
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        toolbar.add(newGameButton);
+        panel.add(toolbar, BorderLayout.NORTH);
+
+        for (int i = 0; i < config.games; i++) {
+            addGame();
+        }
+        frame.pack();
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setVisible(true);
+
+        // Pick up changes to the config file while the games run
+        configWatcher = new ConfigWatcher(configFile, newConfig -> SwingUtilities.invokeLater(() -> {
+            for (OthelloGUI game : games) {
+                game.reloadConfig(newConfig);
+            }
+        }));
+        try {
+            configWatcher.start();
+        } catch (IOException iox) {
+            System.out.println("Config file not watched: " + iox.getMessage());
+        }
+
+    }
+
+    /**
+     * Open another game, with the config the deck started with
+     */
+    public void addGame() {
+
+        lastNumber++;
+        OthelloGUI game = new OthelloGUI(this, config, lastNumber);
+        games.add(game);
+        if (tabs != null) {
+            tabs.addTab("Game " + lastNumber, game.getContent());
+            tabs.setSelectedComponent(game.getContent());
+        } else {
+            tiles.add(game.getContent());
+            tiles.revalidate();
+        }
+
+    }
+
+    /**
+     * Close a game whose match is over; the process ends with the last game
+     *
+     * @param  game  the game
+     */
+    public void closeGame(OthelloGUI game) {
+
+        game.close();
+        games.remove(game);
+        if (games.isEmpty()) {
+            configWatcher.stop();
+            System.exit(0);
+        }
+        if (tabs != null) {
+            tabs.remove(game.getContent());
+        } else {
+            tiles.remove(game.getContent());
+            tiles.revalidate();
+            tiles.repaint();
+        }
+
+    }
+
+    /**
+     * Gives the board icons shared by every game
+     *
+     * @return the player icons followed by the indicator icon, at any size
+     */
+    public IconCache iconCache() {
+
+        return iconCache;
+
+    }
+
+    /**
+     * Gives the pool the engines of every game run their background work on
+     *
+     * @return the shared search pool
+     */
+    public Executor searchExecutor() {
+
+        return searches;
+
+    }
+
+    /**
+     * Search a computer move on the shared pool; it waits for a thread if every thread is searching
+     * The warm-up and the pondering of every game end here, so they never hold up a real search.
+     *
+     * @param  search  the search
+     */
+    public void search(Runnable search) {
+
+        if (warmUp != null) {
+            warmUp.stop();
+        }
+        for (OthelloGUI game : games) {
+            game.stopPondering();
+        }
+        searches.execute(search);
+
+    }
+
+}
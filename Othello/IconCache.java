@@ -0,0 +1,153 @@
+/*
+ * IconCache.java
+ *
+ * The board icons (the player pieces and the valid-move indicator) scaled to the size of a slot.
+ * Scaling is done once per size, on a background thread, into BufferedImages that draw without any further scaling;
+ * the last few sizes are kept, so resizing the window back and forth does not scale again.
+ * The images come from Assets; until they are all decoded, placeholders are scaled and not kept.
+ */
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class IconCache {
+
+    private final static int NUMSIZES = 8; // Number of sizes kept
+
+    private final Assets assets; // Where the images are loaded
+    private final String[] paths; // The paths of the images
+    private final Map < Integer, ImageIcon[] > icons; // The scaled icons by size, least recently used first
+    private final ExecutorService scaler; // The background thread that scales the images
+
+    /**
+     * Constructor: starts loading the images to scale
+     *
+     * @param  assets  where the images are loaded
+     * @param  paths  the paths of the images
+     */
+    public IconCache(Assets assets, String[] paths) {
+
+        this.assets = assets;
+        this.paths = paths.clone();
+        assets.preload(paths);
+        icons = new LinkedHashMap < Integer, ImageIcon[] > (NUMSIZES, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry < Integer, ImageIcon[] > eldest) {
+                return size() > NUMSIZES;
+            }
+        };
+        scaler = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "IconCache");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    }
+
+    /**
+     * Gives whether every image has been decoded
+     *
+     * @return true if the icons are scaled from the images, not from placeholders
+     */
+    public boolean isReady() {
+
+        for (String path : paths) {
+            if (!assets.isReady(path)) {
+                return false;
+            }
+        }
+        return true;
+
+    }
+
+    /**
+     * Run something on the event dispatch thread once every image has been decoded
+     *
+     * @param  action  what to run, usually asking for the icons again
+     */
+    public void whenReady(Runnable action) {
+
+        CompletableFuture < ? > [] loads = new CompletableFuture < ? > [paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            loads[i] = assets.load(paths[i]);
+        }
+        CompletableFuture.allOf(loads).thenRun(() -> SwingUtilities.invokeLater(action));
+
+    }
+
+    /**
+     * Gives the icons at a size, scaling them now if they are not cached
+     * Until the images are decoded, the icons are placeholders.
+     *
+     * @param  size  the width and height of the icons
+     * @return the icons, in the order of the images
+     */
+    public ImageIcon[] get(int size) {
+
+        ImageIcon[] scaled;
+        synchronized (icons) {
+            scaled = icons.get(size);
+        }
+        if (scaled == null) {
+            boolean ready = isReady(); // Checked before scaling, so placeholders are never kept
+            scaled = scale(size);
+            if (ready) {
+                synchronized (icons) {
+                    icons.put(size, scaled);
+                }
+            }
+        }
+        return scaled;
+
+    }
+
+    /**
+     * Get the icons at a size without blocking: if they are not cached, they are scaled on the background thread
+     * The listener is called on the event dispatch thread once they are ready.
+     *
+     * @param  size  the width and height of the icons
+     * @param  listener  given the icons, in the order of the images
+     */
+    public void request(int size, java.util.function.Consumer < ImageIcon[] > listener) {
+
+        ImageIcon[] scaled;
+        synchronized (icons) {
+            scaled = icons.get(size);
+        }
+        if (scaled != null) {
+            listener.accept(scaled);
+        } else {
+            scaler.execute(() -> {
+                ImageIcon[] result = get(size);
+                SwingUtilities.invokeLater(() -> listener.accept(result));
+            });
+        }
+
+    }
+
+    /*
+     * Scale every image to a size
+     *
+     * @param  size  the width and height of the icons
+     * @return the scaled icons
+     */
+    private ImageIcon[] scale(int size) {
+
+        ImageIcon[] scaled = new ImageIcon[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            BufferedImage image = new BufferedImage(Math.max(1, size), Math.max(1, size), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.drawImage(assets.imageNow(paths[i], size, size), 0, 0, size, size, null);
+            g.dispose();
+            scaled[i] = new ImageIcon(image);
+        }
+        return scaled;
+
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * MCTS.java
+ *
+ * A Monte Carlo tree search bot, an alternative to the minimax search in AI.
+ * Each iteration walks down the tree picking children with UCT, adds one new child,
+ * plays the rest of the game out at random and backs the result up the path.
+ * The playouts run on bitboards (see Bitboard) with no allocation, so they are fast.
+ * The tree is shared by several threads; a thread adds a virtual loss to every node on its path
+ * so that the other threads are steered towards different parts of the tree until it backs up its result.
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class MCTS implements Engine {
+
+    private final static int NUMPLAYER = 2; // Number of players
+
+    private final static int VIRTUALLOSS = 1; // Visits (with no wins) added to a path while a playout on it is running
+
+    private double exploration = Math.sqrt(2); // UCT exploration constant: bigger means wider search
+    private int numThreads = Runtime.getRuntime().availableProcessors(); // Number of searching threads
+    private Executor executor = BackgroundTask.OWNTHREAD; // Runs the searching threads other than the caller's
+    private long playouts = 0; // Keeps track of playouts run for testing purposes
+    private int maxDepth; // The deepest node reached by the last search
+    private volatile boolean stopped; // Set by stop() to end the search early
+    private SearchStats stats = new SearchStats(0, 0, 0); // Statistics of the last search
+
+    /*
+     * A position in the search tree
+     * Wins and visits are counted for the player who made the move leading to the node.
+     */
+    private static class Node {
+
+        final Node parent; // The node before the move, null for the root
+        final int square; // The move leading to the node, -1 for the root
+        final long own; // The pieces of the player to move
+        final long opp; // The pieces of the other player
+        long untried; // Moves that have no child yet
+        final Node[] children; // The children expanded so far
+        int numChildren; // Number of children expanded so far
+        double wins; // Wins (draws count as half) for the player who moved into the node
+        int visits; // Number of playouts through the node, including virtual losses
+
+        Node(Node parent, int square, long own, long opp) {
+            this.parent = parent;
+            this.square = square;
+            this.own = own;
+            this.opp = opp;
+            untried = Bitboard.moves(own, opp);
+            children = new Node[Long.bitCount(untried)];
+        }
+
+    }
+
+    /*
+     * Calculates the best move with a new bot and returns it
+     *
+     * @param  node  the current state of the board
+     * @param  player  the current player
+     * @param  budget  the time to search for, in milliseconds
+     * @return coordinates of the best move
+     */
+    public static int[] makeMove(int[][] node, int player, int budget) {
+
+        MCTS mcts = new MCTS();
+        int[] bestMove = mcts.search(node, player, budget);
+        System.out.println("Playouts: " + mcts.playouts);
+        return bestMove;
+
+    }
+
+    /*
+     * Set the UCT exploration constant
+     *
+     * @param  exploration  the constant: bigger means wider search
+     */
+    public void setExploration(double exploration) {
+
+        this.exploration = exploration;
+
+    }
+
+    /*
+     * Set the number of threads searching the tree
+     *
+     * @param  numThreads  the number of threads
+     */
+    public void setNumThreads(int numThreads) {
+
+        this.numThreads = Math.max(1, numThreads);
+
+    }
+
+    /*
+     * Set where the searching threads other than the caller's run: by default on threads of their own
+     * With a bounded pool, threads that do not get started before the time runs out are left out.
+     *
+     * @param  executor  the executor, such as the search pool shared by the games
+     */
+    public void setExecutor(Executor executor) {
+
+        this.executor = executor;
+
+    }
+
+    /*
+     * Ends the running search; it returns the most visited move so far
+     */
+    public void stop() {
+
+        stopped = true;
+
+    }
+
+    /*
+     * Gives the statistics of the last search
+     *
+     * @return the playouts run, the deepest node reached and the time taken
+     */
+    public SearchStats stats() {
+
+        return stats;
+
+    }
+
+    /*
+     * Calculates the best move and returns it
+     * Searches until the time budget runs out, on numThreads threads sharing one tree: the caller's and numThreads - 1 from the executor
+     *
+     * @param  node  the current state of the board
+     * @param  player  the current player
+     * @param  budget  the time to search for, in milliseconds
+     * @return coordinates of the best move
+     */
+    public int[] search(int[][] node, int player, int budget) {
+
+        long start = System.currentTimeMillis();
+        stopped = false;
+        maxDepth = 0;
+
+        Node root = new Node(null, -1, Bitboard.fromBoard(node, player), Bitboard.fromBoard(node, (player + 1) % NUMPLAYER));
+        if (root.children.length == 0) { // The board is full
+            return null;
+        }
+
+        long deadline = start + budget;
+        playouts = 0;
+
+        // Start the other searching threads, search on this one, then wait for the others
+        BackgroundTask[] helpers = new BackgroundTask[numThreads - 1];
+        long[] threadPlayouts = new long[numThreads];
+        for (int t = 1; t < numThreads; t++) {
+            final int index = t;
+            final long seed = System.nanoTime() + t;
+            helpers[t - 1] = BackgroundTask.start(executor, () -> threadPlayouts[index] = runIterations(root, deadline, seed));
+        }
+        threadPlayouts[0] = runIterations(root, deadline, System.nanoTime());
+        for (BackgroundTask helper : helpers) {
+            helper.finish();
+        }
+        for (long threadPlayout : threadPlayouts) {
+            playouts += threadPlayout;
+        }
+
+        // The most visited child is the best move
+        int bestSquare = Long.numberOfTrailingZeros(root.untried); // If not even one iteration finished, play the first move
+        int bestVisits = -1;
+        for (int i = 0; i < root.numChildren; i++) {
+            if (root.children[i].visits > bestVisits) {
+                bestVisits = root.children[i].visits;
+                bestSquare = root.children[i].square;
+            }
+        }
+
+        stats = new SearchStats(playouts, maxDepth, System.currentTimeMillis() - start);
+        return Bitboard.toMove(bestSquare);
+
+    }
+
+    /*
+     * Run iterations on the shared tree until the deadline
+     * Selection, expansion and backing up hold the tree's lock; the playouts, which take most of the time, do not.
+     *
+     * @param  root  the root of the tree
+     * @param  deadline  the time to stop at
+     * @param  seed  the seed of the thread's random numbers
+     * @return the number of playouts run by the thread
+     */
+    private long runIterations(Node root, long deadline, long seed) {
+
+        long random = seed == 0 ? 1 : seed; // xorshift state
+        long count = 0;
+
+        while (!stopped && System.currentTimeMillis() < deadline) {
+
+            Node leaf;
+            synchronized (root) {
+                leaf = selectAndExpand(root);
+            }
+
+            // Play the game out at random from the leaf
+            long own = leaf.own;
+            long opp = leaf.opp;
+            int ply = 0; // Number of moves played out
+            long moves = Bitboard.moves(own, opp);
+            while (moves != 0) {
+                // Pick a random valid move
+                random ^= random << 13;
+                random ^= random >>> 7;
+                random ^= random << 17;
+                int pick = (int) ((random >>> 1) % Long.bitCount(moves));
+                long rest = moves;
+                for (int i = 0; i < pick; i++) {
+                    rest &= rest - 1;
+                }
+                int square = Long.numberOfTrailingZeros(rest);
+
+                // Play it and switch sides
+                long flipped = Bitboard.flips(own, opp, square);
+                long newOwn = own | flipped | (1L << square);
+                own = opp & ~flipped;
+                opp = newOwn;
+                ply++;
+                moves = Bitboard.moves(own, opp);
+            }
+
+            // Score the result for the player who moved into the leaf
+            int ownPieces = Long.bitCount(ply % 2 == 0 ? own : opp); // The leaf's player to move
+            int oppPieces = Long.bitCount(ply % 2 == 0 ? opp : own);
+            double result = ownPieces < oppPieces ? 1 : ownPieces == oppPieces ? 0.5 : 0;
+
+            synchronized (root) {
+                backUp(leaf, result);
+            }
+            count++;
+
+        }
+
+        return count;
+
+    }
+
+    /*
+     * Walk down the tree with UCT and add one new child, adding a virtual loss to every node on the way
+     *
+     * @param  root  the root of the tree
+     * @return the new child, or a node where the game is over
+     */
+    private Node selectAndExpand(Node root) {
+
+        Node node = root;
+        node.visits += VIRTUALLOSS;
+        int depth = 0;
+
+        while (node.untried == 0 && node.numChildren > 0) { // Fully expanded
+            node = bestChild(node);
+            node.visits += VIRTUALLOSS;
+            depth++;
+        }
+
+        if (node.untried != 0) { // Expand one untried move
+            int square = Long.numberOfTrailingZeros(node.untried);
+            node.untried &= node.untried - 1;
+            long flipped = Bitboard.flips(node.own, node.opp, square);
+            Node child = new Node(node, square, node.opp & ~flipped, node.own | flipped | (1L << square));
+            node.children[node.numChildren++] = child;
+            node = child;
+            node.visits += VIRTUALLOSS;
+            depth++;
+        }
+
+        maxDepth = Math.max(maxDepth, depth);
+
+        return node;
+
+    }
+
+    /*
+     * Pick the child with the highest UCT value
+     *
+     * @param  node  a fully expanded node
+     * @return the child to walk down to
+     */
+    private Node bestChild(Node node) {
+
+        double logVisits = Math.log(node.visits);
+        Node best = null;
+        double bestValue = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < node.numChildren; i++) {
+            Node child = node.children[i];
+            double value = child.wins / child.visits + exploration * Math.sqrt(logVisits / child.visits);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+
+        return best;
+
+    }
+
+    /*
+     * Add a playout result to every node on the path from the leaf to the root, replacing the virtual losses
+     *
+     * @param  leaf  the node the playout started from
+     * @param  result  the result for the player who moved into the leaf: 1 for a win, 0.5 for a draw, 0 for a loss
+     */
+    private void backUp(Node leaf, double result) {
+
+        for (Node node = leaf; node != null; node = node.parent) {
+            node.visits += 1 - VIRTUALLOSS;
+            node.wins += result;
+            result = 1 - result; // The parent was moved into by the other player
+        }
+
+    }
+
+}
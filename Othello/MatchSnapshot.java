@@ -0,0 +1,409 @@
+/*
+ * MatchSnapshot.java
+ *
+ * The state of a match at one moment, in a compact binary form, so a match can be saved and resumed:
+ * the size of the board, the pieces of each player as bitboards (64 slots to a long, row by row),
+ * the player to move, the number of games needed to win, the match score and the moves of the game so far.
+ * The indicators are not stored: they are every empty slot next to a piece.
+ *
+ * Snapshots are kept in archive files, each snapshot prefixed with its length, so one file can hold
+ * a single saved match or a long run of them. Files are written through a file channel and read through
+ * memory-mapped windows, so scanning a large archive does not copy it through the Java heap.
+ * Every snapshot is checked as it is read, so a damaged file is turned down instead of resuming an impossible match.
+ *
+ * Layout of a snapshot (big-endian):
+ *   int magic, byte version, byte rows, byte cols, byte player to move,
+ *   short games to win, short score of each player, short number of moves,
+ *   long[] pieces of player 1, long[] pieces of player 2, short[] moves (row * cols + col)
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.function.*;
+
+public class MatchSnapshot {
+
+    private final static int NUMPLAYER = 2; // Number of players
+
+    private final static int INDICATOR = -2; // Represents valid-move indicator
+    private final static int EMPTY = -1; // Represents an empty slot
+
+    private final static int MAGIC = 0x4f54484c; // Starts every snapshot
+    private final static byte VERSION = 1; // The version of the layout
+    private final static int HEADERSIZE = 16; // Bytes before the bitboards
+    private final static long MAPWINDOW = 64 << 20; // Most bytes of an archive mapped at once
+
+    private final int rows; // Number of rows on the board
+    private final int cols; // Number of columns on the board
+    private final int player; // The player to move
+    private final int maxGame; // Number of games needed to win the match
+    private final int[] scores; // The number of games each player has won
+    private final long[][] pieces; // The pieces of each player, 64 slots to a long
+    private final int[] moves; // The moves of the game so far (row * cols + col)
+
+    /**
+     * Constructor: takes the state of a match
+     *
+     * @param  board  the state of the board
+     * @param  player  the player to move
+     * @param  maxGame  the number of games needed to win the match
+     * @param  scores  the number of games each player has won
+     * @param  moves  the moves of the game so far, as row * cols + col
+     */
+    public MatchSnapshot(int[][] board, int player, int maxGame, int[] scores, int[] moves) {
+
+        rows = board.length;
+        cols = board[0].length;
+        this.player = player;
+        this.maxGame = maxGame;
+        this.scores = scores.clone();
+        this.moves = moves.clone();
+
+        pieces = new long[NUMPLAYER][words(rows, cols)];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (board[i][j] >= 0) {
+                    int k = i * cols + j;
+                    pieces[board[i][j]][k >>> 6] |= 1L << (k & 63);
+                }
+            }
+        }
+
+    }
+
+    /*
+     * Constructor used when reading: takes the fields as they were stored
+     */
+    private MatchSnapshot(int rows, int cols, int player, int maxGame, int[] scores, long[][] pieces, int[] moves) {
+
+        this.rows = rows;
+        this.cols = cols;
+        this.player = player;
+        this.maxGame = maxGame;
+        this.scores = scores;
+        this.pieces = pieces;
+        this.moves = moves;
+
+    }
+
+    /*
+     * Give the number of longs that hold the pieces of one player
+     */
+    private static int words(int rows, int cols) {
+
+        return (rows * cols + 63) / 64;
+
+    }
+
+    /**
+     * Gives the board, with an indicator on every empty slot next to a piece
+     *
+     * @return a new board array
+     */
+    public int[][] board() {
+
+        int[][] board = new int[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                board[i][j] = EMPTY;
+                int k = i * cols + j;
+                for (int p = 0; p < NUMPLAYER; p++) {
+                    if ((pieces[p][k >>> 6] & 1L << (k & 63)) != 0) {
+                        board[i][j] = p;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (board[i][j] != EMPTY) {
+                    continue;
+                }
+                for (int r = Math.max(0, i - 1); r <= Math.min(rows - 1, i + 1) && board[i][j] == EMPTY; r++) {
+                    for (int c = Math.max(0, j - 1); c <= Math.min(cols - 1, j + 1); c++) {
+                        if (board[r][c] >= 0) {
+                            board[i][j] = INDICATOR;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        return board;
+
+    }
+
+    /**
+     * Gives the number of pieces each player has
+     */
+    public int[] points() {
+
+        int[] points = new int[NUMPLAYER];
+        for (int p = 0; p < NUMPLAYER; p++) {
+            for (long word : pieces[p]) {
+                points[p] += Long.bitCount(word);
+            }
+        }
+        return points;
+
+    }
+
+    /**
+     * Gives the number of rows on the board
+     */
+    public int rows() {
+
+        return rows;
+
+    }
+
+    /**
+     * Gives the number of columns on the board
+     */
+    public int cols() {
+
+        return cols;
+
+    }
+
+    /**
+     * Gives the player to move
+     */
+    public int player() {
+
+        return player;
+
+    }
+
+    /**
+     * Gives the number of games needed to win the match
+     */
+    public int maxGame() {
+
+        return maxGame;
+
+    }
+
+    /**
+     * Gives the number of games each player has won
+     */
+    public int[] scores() {
+
+        return scores.clone();
+
+    }
+
+    /**
+     * Gives the moves of the game so far, as row * cols + col
+     */
+    public int[] moves() {
+
+        return moves.clone();
+
+    }
+
+    /*
+     * Give the number of bytes the snapshot takes
+     */
+    private int size() {
+
+        return HEADERSIZE + NUMPLAYER * 8 * words(rows, cols) + 2 * moves.length;
+
+    }
+
+    /*
+     * Write the snapshot at the position of a buffer
+     *
+     * @param  buffer  the buffer, with room for size() bytes
+     */
+    private void write(ByteBuffer buffer) {
+
+        buffer.putInt(MAGIC).put(VERSION).put((byte) rows).put((byte) cols).put((byte) player);
+        buffer.putShort((short) maxGame);
+        for (int score : scores) {
+            buffer.putShort((short) score);
+        }
+        buffer.putShort((short) moves.length);
+        for (long[] words : pieces) {
+            for (long word : words) {
+                buffer.putLong(word);
+            }
+        }
+        for (int move : moves) {
+            buffer.putShort((short) move);
+        }
+
+    }
+
+    /*
+     * Read a snapshot from the position of a buffer, checking that it describes a match that can be played on
+     *
+     * @param  buffer  the buffer
+     * @return the snapshot
+     */
+    private static MatchSnapshot read(ByteBuffer buffer) throws IOException {
+
+        if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+            throw new IOException("Not a match snapshot");
+        }
+        int rows = buffer.get();
+        int cols = buffer.get();
+        int player = buffer.get();
+        int maxGame = buffer.getShort();
+        for (int side : new int[] {rows, cols}) {
+            if (side < PackedBoard.MINSIZE || side > PackedBoard.MAXSIZE || side % 2 != 0) {
+                throw new IOException("The board size must be even and between " + PackedBoard.MINSIZE + " and " + PackedBoard.MAXSIZE + ": " + rows + "x" + cols);
+            }
+        }
+        if (player < 0 || player >= NUMPLAYER) {
+            throw new IOException("No player " + player);
+        }
+        if (maxGame < 1) {
+            throw new IOException("The match needs at least one game to win: " + maxGame);
+        }
+        int[] scores = new int[NUMPLAYER];
+        for (int p = 0; p < NUMPLAYER; p++) {
+            scores[p] = buffer.getShort();
+            if (scores[p] < 0 || scores[p] >= maxGame) {
+                throw new IOException("Score " + scores[p] + " of player " + (p + 1) + " does not fit a match to " + maxGame);
+            }
+        }
+        int[] moves = new int[buffer.getShort() & 0xffff];
+        long[][] pieces = new long[NUMPLAYER][words(rows, cols)];
+        for (long[] words : pieces) {
+            for (int w = 0; w < words.length; w++) {
+                words[w] = buffer.getLong();
+            }
+        }
+        int area = rows * cols;
+        for (int w = 0; w < pieces[0].length; w++) {
+            long outside = w == pieces[0].length - 1 && area % 64 != 0 ? -1L << (area % 64) : 0; // Bits past the last slot
+            if ((pieces[0][w] & pieces[1][w]) != 0 || ((pieces[0][w] | pieces[1][w]) & outside) != 0) {
+                throw new IOException("The pieces do not fit the board");
+            }
+        }
+        for (int m = 0; m < moves.length; m++) {
+            moves[m] = buffer.getShort();
+            if (moves[m] < 0 || moves[m] >= area) {
+                throw new IOException("Move " + moves[m] + " is not on the board");
+            }
+        }
+        return new MatchSnapshot(rows, cols, player, maxGame, scores, pieces, moves);
+
+    }
+
+    /**
+     * Save a snapshot as the only one in a file, replacing the file in one step so a crash never leaves half of it
+     *
+     * @param  file  the file
+     * @param  snapshot  the snapshot
+     */
+    public static void save(Path file, MatchSnapshot snapshot) throws IOException {
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeRecord(channel, snapshot);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    }
+
+    /**
+     * Add a snapshot to the end of an archive file, creating it if needed
+     *
+     * @param  file  the archive
+     * @param  snapshot  the snapshot
+     */
+    public static void append(Path file, MatchSnapshot snapshot) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            writeRecord(channel, snapshot);
+        }
+
+    }
+
+    /*
+     * Write a snapshot and its length prefix to a channel
+     */
+    private static void writeRecord(FileChannel channel, MatchSnapshot snapshot) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4 + snapshot.size());
+        buffer.putInt(snapshot.size());
+        snapshot.write(buffer);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+    }
+
+    /**
+     * Load the last snapshot of a file: the saved match, or the latest of an archive
+     *
+     * @param  file  the file
+     * @return the snapshot
+     */
+    public static MatchSnapshot load(Path file) throws IOException {
+
+        MatchSnapshot[] last = new MatchSnapshot[1];
+        scan(file, snapshot -> last[0] = snapshot);
+        if (last[0] == null) {
+            throw new IOException("No snapshot in " + file);
+        }
+        return last[0];
+
+    }
+
+    /**
+     * Read every snapshot of an archive in order, through memory-mapped windows of the file
+     * A record cut off at the end of the file, by a crash while appending, is left out; any other damage
+     * (a length that cannot be right, a snapshot that does not fill its record or fails the checks of read)
+     * stops the scan with an IOException.
+     *
+     * @param  file  the archive
+     * @param  visitor  given each snapshot
+     * @return the number of snapshots read
+     */
+    public static long scan(Path file, Consumer < MatchSnapshot > visitor) throws IOException {
+
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0; // Where the mapped window starts in the file
+            while (size - start >= 4) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAPWINDOW, size - start));
+                int consumed = 0; // Bytes of whole records read from the window
+                while (window.limit() - consumed >= 4) {
+                    int length = window.getInt(consumed);
+                    if (length < HEADERSIZE || length > MAPWINDOW - 4) {
+                        throw new IOException("Corrupt archive at byte " + (start + consumed));
+                    }
+                    if (consumed + 4 + length > window.limit()) { // The record runs past the window
+                        break;
+                    }
+                    window.position(consumed + 4);
+                    MatchSnapshot snapshot = read(window);
+                    if (window.position() != consumed + 4 + length) {
+                        throw new IOException("The snapshot at byte " + (start + consumed) + " does not fill its record");
+                    }
+                    visitor.accept(snapshot);
+                    count++;
+                    consumed += 4 + length;
+                }
+                if (consumed == 0) { // Only part of a record is left: one cut off by a crash while appending
+                    break;
+                }
+                start += consumed;
+            }
+        } catch (BufferUnderflowException bux) {
+            throw new IOException("Malformed snapshot in " + file);
+        }
+        return count;
+
+    }
+
+}
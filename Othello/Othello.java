@@ -9,10 +9,12 @@
  *   Detecting the end of a game or match and displaying winner
  */
 
+import java.util.*;
+
 public class Othello {
 
     /* constants */
-    final int MAXGAME; // the number of games a player needs to win to win the match  
+    int MAXGAME; // the number of games a player needs to win to win the match  
     final int NUMPLAYER; // number of players in the game
     final int NUMROW; // number of rows in the game board
     final int NUMCOL; // number of columns in the game board
@@ -27,7 +29,8 @@ public class Othello {
     final int[] INITIALPLAYERCORDS; // corresponding player of the starting points
 
     OthelloGUI gui; // user interface object
-    int numMove; // number of moves since the beginning of the game - unused so far
+    int numMove; // number of moves since the beginning of the game
+    int[] history; // the slot (row * NUMCOL + col) of every move since the beginning of the game
     int curPlayer; // the current player
     int board[][]; // 2D representation of the game board
     int score[]; // the match scores or the number of games each player has won
@@ -54,18 +57,19 @@ public class Othello {
 
         // Create the arrays containing information about the initial set up
         NUMINITIALCORDS = 4;
+        // The starting points are the four slots in the centre of the board
         // The row coordinate (y-coordinate) of the starting points
         INITIALROWCORDS = new int[NUMINITIALCORDS];
-        INITIALROWCORDS[0] = 3;
-        INITIALROWCORDS[1] = 4;
-        INITIALROWCORDS[2] = 3;
-        INITIALROWCORDS[3] = 4;
+        INITIALROWCORDS[0] = NUMROW / 2 - 1;
+        INITIALROWCORDS[1] = NUMROW / 2;
+        INITIALROWCORDS[2] = NUMROW / 2 - 1;
+        INITIALROWCORDS[3] = NUMROW / 2;
         // The column coordinate (x-coordinate) of the starting points
         INITIALCOLCORDS = new int[NUMINITIALCORDS];
-        INITIALCOLCORDS[0] = 3;
-        INITIALCOLCORDS[1] = 3;
-        INITIALCOLCORDS[2] = 4;
-        INITIALCOLCORDS[3] = 4;
+        INITIALCOLCORDS[0] = NUMCOL / 2 - 1;
+        INITIALCOLCORDS[1] = NUMCOL / 2 - 1;
+        INITIALCOLCORDS[2] = NUMCOL / 2;
+        INITIALCOLCORDS[3] = NUMCOL / 2;
         // The corresponding player of the starting points
         INITIALPLAYERCORDS = new int[NUMINITIALCORDS];
         INITIALPLAYERCORDS[0] = PLAYER2;
@@ -75,6 +79,7 @@ public class Othello {
 
         score = new int[NUMPLAYER]; // make score array
         points = new int[NUMPLAYER]; // make points array
+        history = new int[AREA]; // make move history array
 
         // Start a match
         newMatch();
@@ -105,6 +110,9 @@ public class Othello {
         curPlayer = PLAYER1;
         gui.setNextPlayer(PLAYER1);
 
+        // No moves made yet
+        numMove = 0;
+
         // Set the points to 0
         for (int i = 0; i < NUMPLAYER; i++) {
             points[i] = 0;
@@ -574,6 +582,21 @@ public class Othello {
         
     }
 
+    /**
+     * Gives the current match scores of the players as an array
+     *
+     * @return the number of games each player has won, as an array of NUMPLAYER length
+     */
+    public int[] getScores() { 
+    
+        int[] newScores = new int[NUMPLAYER]; // The score array to be returned
+        for (int i = 0; i < NUMPLAYER; i++) { 
+            newScores[i] = score[i]; // Create the new array
+        } 
+        return newScores;
+        
+    }
+
     /**
      * Gives the current state of the board
      *
@@ -591,6 +614,74 @@ public class Othello {
         
     }
 
+    /**
+     * Gives the current state of the board and the player to move as a position, on the 8x8 board only
+     *
+     * @return the current position
+     */
+    public Position getPosition() {
+
+        return Position.fromBoard(board, curPlayer);
+
+    }
+
+    /**
+     * Gives the state of the match, to be saved
+     *
+     * @return the board, the player to move, the match score and the moves of the game so far
+     */
+    public MatchSnapshot getSnapshot() {
+
+        return new MatchSnapshot(board, curPlayer, MAXGAME, score, Arrays.copyOf(history, numMove));
+
+    }
+
+    /**
+     * Resume a saved match: set the board, the player to move, the points, the match score, the number of
+     * games to win and the move history
+     * Update the graphics to match.
+     *
+     * @param  snapshot  the saved match
+     */
+    public void restore(MatchSnapshot snapshot) {
+
+        if (snapshot.rows() != NUMROW || snapshot.cols() != NUMCOL) {
+            throw new IllegalArgumentException("The match was saved on a " + snapshot.rows() + "x" + snapshot.cols() + " board");
+        }
+
+        // The board
+        board = snapshot.board();
+        gui.resetGameBoard();
+        for (int i = 0; i < NUMROW; i++) {
+            for (int j = 0; j < NUMCOL; j++) {
+                if (board[i][j] >= 0) {
+                    gui.setPiece(i, j, board[i][j]);
+                } else if (board[i][j] == INDICATOR) {
+                    gui.setIndicator(i, j);
+                }
+            }
+        }
+
+        // The points and the match score
+        points = snapshot.points();
+        score = snapshot.scores();
+        for (int i = 0; i < NUMPLAYER; i++) {
+            gui.setPlayerPoints(i, points[i]);
+            gui.setPlayerScore(i, score[i]);
+        }
+
+        // The length of the match
+        MAXGAME = snapshot.maxGame();
+
+        // The turn and the moves so far
+        curPlayer = snapshot.player();
+        gui.setNextPlayer(curPlayer);
+        int[] moves = snapshot.moves();
+        numMove = moves.length;
+        System.arraycopy(moves, 0, history, 0, numMove);
+
+    }
+
     /**
      * Runs the logic that should run after a slot is clicked
      *  
@@ -601,9 +692,11 @@ public class Othello {
     public void play(int[] move) {
 
         if (validMove(move[0], move[1])) { // If the move is valid,
+          history[numMove++] = move[0] * NUMCOL + move[1]; // record the move
           updateBoard(move[0], move[1]); // update the board appropriately
           setNextPlayer(); // give the turn to the next player
           updateMatchScore(); // update the match score appropriately
+          gui.matchChanged(); // let the gui save the match
         }
 
     }
@@ -2,16 +2,19 @@
  * OthelloGUI.java
  *
  * Provide the GUI for the Othello game
+ * Each game is a panel in a tab or tile of the GameDeck, which can hold many games at once.
  * The main features include the play frame, the info frame, and the banner.
  * The info frame includes the AI buttons, the scoreboards of the players, and the next player.
  * Also handles the displaying of the messages for outflanks, wins, ties, losses, and end of match
  */
 
 import javax.swing.*;
-import javax.swing.border.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
 
 public class OthelloGUI {
 
@@ -21,16 +24,18 @@ public class OthelloGUI {
     final int PLAYER2; // identification of player 2
     
     // the name of the configuration file
-    private final String CONFIGFILE = "config.txt";
+    private final static String CONFIGFILE = "config.txt";
 
-    private JLabel[][] slots; 
-    private JFrame mainFrame;
+    private BoardView boardView; // The game board
+    private EventLog eventLog; // Notifications and the log of what happened
+    private final GameDeck deck; // The window of every game, which shares the icons and the search threads
+    private final int number; // The number of the game in the deck, from 1
+    private JPanel content; // Everything of the game, shown in a tab or tile of the deck
     private JTextField[] playerScore;
     private JTextField[] playerPoints; // Textfields for the player points
     private ImageIcon[] playerIcon; // Icons for players
     private ImageIcon indicatorIcon; // Icon for indicators 
-    private ImageIcon[] playerIconVariable; // A size-variable version
-    private ImageIcon indicatorIconVariable; // A size-variable version
+    private IconCache iconCache; // The size-variable player and indicator icons for every size used so far
     private ImageIcon computerIcon; // Icon for computer
     private ImageIcon computerIconHard; // Icon for the hard computer
     private JLabel nextPlayerIcon; // Icon for the next player
@@ -48,8 +53,26 @@ public class OthelloGUI {
     private String computerIconFile; // file to the computer image
     private String computerIconHardFile; // file to the hard computer image
 
-    private final int DEPTH = 2; // The maxium depth that the ai's minimax algorithm will search to
-    private final int BIGDEPTH = 4; // The longer search depth for hard
+    private int easyStrength = 2; // How hard the ai searches (the depth for minimax, milliseconds for mcts)
+    private int hardStrength = 4; // How hard the hard ai searches
+    private GameConfig config; // The settings of the config file in use
+    private Engine engine; // The ai that plays for the computer buttons
+    private final AtomicReference < Engine > nextEngine = new AtomicReference < Engine > (); // Made from a reloaded config, replaces the engine before the next computer move
+    private GameConfig autoplayConfig; // The config the autoplay engines were made from
+    private boolean ponder; // Whether the ai keeps searching while the human thinks
+    private int frameBudget = 100; // Milliseconds between frames drawn during autoplay
+    private Autoplay autoplay; // Plays the engines against each other, null until first used
+    private javax.swing.Timer frameTimer; // Draws the autoplay games
+    private JToggleButton autoplayButton; // Starts and stops autoplay
+    private JLabel autoplayStats; // The speed of autoplay
+    private JLabel analysisLabel; // The depth, speed and principal variation of the running search
+    private javax.swing.Timer analysisTimer; // Shows the analysis of the running search
+    private boolean computerMoving; // Whether the computer is searching for a move
+    private final int ANALYSISDELAY = 100; // Milliseconds between updates of the analysis display
+    private final int CLOSEDELAY = 3000; // Milliseconds the winner of the match is shown before the game closes
+    private javax.swing.Timer closeTimer; // Closes the game once its match is over, null until then
+    private int boardSize = 8; // Number of rows and columns on the game board
+    private volatile Path saveFile; // Where the match is saved after every move, null if it is not saved
 
     private Othello game;
 
@@ -61,17 +84,17 @@ public class OthelloGUI {
     /**
      * Number of rows on the game board
      */
-    public final int NUMROW = 8;
+    public final int NUMROW;
 
     /**
      * Number of colums on the game board
      */
-    public final int NUMCOL = 8;
+    public final int NUMCOL;
     
     /**
      * Area of the board
      */
-    public final int AREA = NUMROW * NUMCOL;
+    public final int AREA;
 
     /**
      * Number of games needed to be won to win the match
@@ -83,33 +106,60 @@ public class OthelloGUI {
      * on the GUI
      */
     private final int PIECESIZE = 70;
-    private final int PLAYPANEWIDTH = NUMCOL * PIECESIZE;
-    private final int PLAYPANEHEIGHT = NUMROW * PIECESIZE;
+    private final int MAXPLAYPANESIZE = 8 * PIECESIZE; // Bigger boards get smaller slots
+    private final int SLOTSIZE;
+    private final int PLAYPANEWIDTH;
+    private final int PLAYPANEHEIGHT;
 
     private final int INFOPANEWIDTH = 2 * PIECESIZE;
-    private final int INFOPANEHEIGHT = PLAYPANEHEIGHT;
+    private final int INFOPANEHEIGHT;
 
     private final int LOGOHEIGHT = 2 * PIECESIZE;
-    private final int LOGOWIDTH = PLAYPANEWIDTH + INFOPANEWIDTH;
+    private final int LOGOWIDTH;
 
-    private final int FRAMEWIDTH = (int)(LOGOWIDTH * 1.03);
-    private final int FRAMEHEIGHT = (int)((LOGOHEIGHT + PLAYPANEHEIGHT) * 1.1);
+    private final int EVENTLOGHEIGHT = 2 * PIECESIZE;
+    private final int EVENTICONSIZE = 32;
+
+    private final int FRAMEWIDTH;
+    private final int FRAMEHEIGHT;
 
     /** 
      * Constructor: 
      * intialize variables from config files
+     * work out the dimensions of the board and the components
      * initialize the imageIcon array
-     * initialize the slots array
-     * create the main frame
+     * create the game board
+     * create the content of the game
      * initialize the identifiers
+     *
+     * @param  deck  the window the game is shown in
+     * @param  config  the settings of the config file
+     * @param  number  the number of the game in the deck, from 1
      */ 
-    public OthelloGUI() {
+    public OthelloGUI(GameDeck deck, GameConfig config, int number) {
     
-        initConfig();
+        this.deck = deck;
+        this.number = number;
+        initConfig(config);
+
+        // The size of the board comes from the config file
+        NUMROW = boardSize;
+        NUMCOL = boardSize;
+        AREA = NUMROW * NUMCOL;
+
+        SLOTSIZE = Math.min(PIECESIZE, MAXPLAYPANESIZE / Math.max(NUMROW, NUMCOL));
+        PLAYPANEWIDTH = NUMCOL * SLOTSIZE;
+        PLAYPANEHEIGHT = NUMROW * SLOTSIZE;
+        INFOPANEHEIGHT = PLAYPANEHEIGHT;
+        LOGOWIDTH = PLAYPANEWIDTH + INFOPANEWIDTH;
+        FRAMEWIDTH = (int)(LOGOWIDTH * 1.03);
+        FRAMEHEIGHT = (int)((LOGOHEIGHT + PLAYPANEHEIGHT + EVENTLOGHEIGHT) * 1.1);
+
         initImageIcon();
         initSlots();
-        createMainFrame();
+        createContent();
 
+        engine = createEngine(config, config.engine); // Create the ai
         game = new Othello(this); // Create the game
         INDICATOR = game.INDICATOR; // represents a valid-move indicator on the game board
         EMPTY = game.EMPTY; // represents an empty square on the game board   
@@ -117,65 +167,124 @@ public class OthelloGUI {
         PLAYER2 = game.PLAYER2; // identification of player 2
         OthelloListener listener = new OthelloListener(game, this); // Create the listener
 
+        // Resume the saved match, if there is one
+        if (saveFile != null && Files.exists(saveFile)) {
+            try {
+                MatchSnapshot snapshot = MatchSnapshot.load(saveFile);
+                game.restore(snapshot);
+                MAXGAME = snapshot.maxGame(); // The match keeps the length it was started with
+                eventLog.post("Resumed the saved match", null);
+            } catch (IOException | IllegalArgumentException x) {
+                System.out.println("Saved match not loaded: " + x.getMessage());
+            }
+        }
+
     }
 
     /**
-     * Initialize the file paths of the images and the number of games in a match
+     * Initialize the file paths of the images, the number of games in a match, the board size and the engine settings
+     * from the config file (see GameConfig)
+     *
+     * @param  gameConfig  the settings of the config file
      */ 
-    private void initConfig() {
+    private void initConfig(GameConfig gameConfig) {
+
+        config = gameConfig;
+        MAXGAME = config.maxGame; // The number of games a player needs to win to win the match
+        logoIcon = config.bannerFile; // The banner
+        iconFile = config.playerIconFiles.clone(); // The players
+        indicatorIconFile = config.indicatorIconFile; // the valid-move indicator image
+        computerIconFile = config.computerIconFile; // the computer's icon
+        computerIconHardFile = config.computerIconHardFile; // the harder computer's icon
+        boardSize = config.boardSize; // The size of the board
+        applySettings(config);
 
-        iconFile = new String[NUMPLAYER]; // The player icons
+    }
 
-        // Read in the file paths
-        try {
-            BufferedReader in = new BufferedReader(new FileReader(CONFIGFILE));
-            MAXGAME = Integer.parseInt(in.readLine()); // The number of games a player needs to win to win the match
-            logoIcon = in.readLine(); // The banner
-            for (int i = 0; i < NUMPLAYER; i++) {
-                iconFile[i] = in.readLine(); // The players
+    /**
+     * Take the settings that can change while the game runs: the strengths of the computer buttons,
+     * pondering, the autoplay frame rate and the save file
+     *
+     * @param  newConfig  the config to take them from
+     */
+    private void applySettings(GameConfig newConfig) {
+
+        easyStrength = newConfig.easyStrength;
+        hardStrength = newConfig.hardStrength;
+        ponder = newConfig.ponder;
+        frameBudget = newConfig.frameBudget;
+        saveFile = newConfig.saveFile(number);
+        if (frameTimer != null) {
+            frameTimer.setDelay(frameBudget);
+        }
+
+    }
+
+    /**
+     * Use a config read again after the config file changed
+     * The settings the GUI reads take effect at once; a new engine is made now and swapped in before the next
+     * computer move, so a search never changes engine halfway. The board, the match length and the images
+     * are only read at startup.
+     *
+     * @param  newConfig  the new config
+     */
+    public void reloadConfig(GameConfig newConfig) {
+
+        if (config.needsRestart(newConfig)) {
+            eventLog.post("The board size, match length and images change on restart", null);
+        }
+        if (config.engineChanged(newConfig)) {
+            try {
+                nextEngine.set(createEngine(newConfig, newConfig.engine));
+            } catch (IllegalArgumentException iax) {
+                eventLog.post("Engine settings not used: " + iax.getMessage(), null);
+                return;
             }
-            indicatorIconFile = in.readLine(); // the valid-move indicator image
-            computerIconFile = in.readLine(); // the computer's icon
-            computerIconHardFile = in.readLine(); // the harder computer's icon
-            in.close();
-        } catch (IOException iox) {
-            System.out.println("Config file not found.");
         }
+        applySettings(newConfig);
+        config = newConfig;
+        eventLog.post("Settings reloaded", null);
 
     }
 
     /**
      * Initialize playerIcon arrays, indicatorIcon, and computerIcon with graphic files 
+     * The images are decoded in the background (see Assets); the icons show placeholders until they are ready.
+     * The size-variable icons are shared by every game of the deck.
      */
     private void initImageIcon() {
     
+        Assets assets = Assets.shared();
+        iconCache = deck.iconCache(); // Set the size-variable icons, which start the board images decoding first
+        assets.preload(logoIcon, computerIconFile, computerIconHardFile);
+
+        // Lay the window out again when an image replaces its placeholder
+        Runnable relayout = () -> {
+            if (content != null) {
+                content.revalidate();
+                content.repaint();
+            }
+        };
+
         playerIcon = new ImageIcon[NUMPLAYER]; // Set the player icon
-        playerIconVariable = new ImageIcon[NUMPLAYER]; // Set the size-variable icon too
         for (int i = 0; i < NUMPLAYER; i++) {
-            playerIcon[i] = new ImageIcon(iconFile[i]); // Create player images
-            playerIconVariable = new ImageIcon[NUMPLAYER]; // Create size-variable player images
+            playerIcon[i] = assets.icon(iconFile[i], PIECESIZE, PIECESIZE, relayout); // Create player images
         }
-        indicatorIcon = new ImageIcon(indicatorIconFile); // Set the indicator icon
-        indicatorIconVariable = new ImageIcon(indicatorIconFile); // Set the variable indicator icon
-        computerIcon = new ImageIcon(computerIconFile); // Set the computer icon
-        computerIconHard = new ImageIcon(computerIconHardFile); // Set the hard computer icon
+        indicatorIcon = assets.icon(indicatorIconFile, PIECESIZE, PIECESIZE, relayout); // Set the indicator icon
+
+        computerIcon = assets.icon(computerIconFile, PIECESIZE, PIECESIZE, relayout); // Set the computer icon
+        computerIconHard = assets.icon(computerIconHardFile, PIECESIZE, PIECESIZE, relayout); // Set the hard computer icon
         
     }
 
     /**
-     * Initialize the array of JLabels
+     * Create the game board
      */ 
     private void initSlots() {
-        slots = new JLabel[NUMROW][NUMCOL];
-        for (int i = 0; i < NUMROW; i++) {
-            for (int j = 0; j < NUMCOL; j++) {
-                slots[i][j] = new JLabel();
-                slots[i][j].setFont(new Font("SansSerif", Font.BOLD, 18));
-                slots[i][j].setPreferredSize(new Dimension(PIECESIZE, PIECESIZE));
-                slots[i][j].setHorizontalAlignment(SwingConstants.CENTER);
-                slots[i][j].setBorder(new LineBorder(Color.white));
-            }
-        }
+
+        boardView = new BoardView(NUMROW, NUMCOL, NUMPLAYER, iconCache, SLOTSIZE);
+        boardView.setBackground(background);
+
     }
 
     /**
@@ -184,62 +293,17 @@ public class OthelloGUI {
     private JPanel createPlayPanel() {
 
         JPanel panel = new JPanel();
-        
-        // Add a component listener to resize the playing pieces
-        panel.addComponentListener(new ComponentListener() {
-
-            public void componentResized(ComponentEvent e) {
-
-               // Get the size of the play panel
-               Rectangle r = panel.getBounds();
-               int side = Math.min(r.height, r.width)/NUMROW;
-
-               // Set the player icons sizes
-               for (int i = 0; i < NUMPLAYER; i++) { 
-                  Image image = playerIcon[i].getImage(); // get the image from the reference icon
-                  Image newimg = image.getScaledInstance(side, side, java.awt.Image.SCALE_SMOOTH); // scale the image
-                  playerIconVariable[i] = new ImageIcon(newimg);  // set the image in the icon
-               }
-               
-               // Set the indicator icon size
-               Image image = indicatorIcon.getImage(); // get the image from the reference icon
-               Image newimg = image.getScaledInstance(side, side, java.awt.Image.SCALE_SMOOTH); // scale the image  
-               indicatorIconVariable = new ImageIcon(newimg); // set the image in the icon
-               
-               int[][] board = game.getBoard(); // get the board from Othello
-               
-               // Reset all the play pieces
-               for (int i = 0; i < NUMROW; i++) { 
-                  for (int j = 0; j < NUMCOL; j++) { 
-                     if (board[i][j] == PLAYER1) { 
-                        slots[i][j].setIcon(playerIconVariable[0]);
-                     } else if (board[i][j] == PLAYER2) { 
-                        slots[i][j].setIcon(playerIconVariable[1]);
-                     } else if (board[i][j] == INDICATOR) { 
-                        slots[i][j].setIcon(indicatorIconVariable);
-                     }
-                  }
-               }
-               
-            }
-            
-            // Unused methods
-            public void componentMoved(ComponentEvent e) {}
-            
-            public void componentShown(ComponentEvent e) {}
-            
-            public void componentHidden(ComponentEvent e) {}
-
-        });
-        
         panel.setPreferredSize(new Dimension(PLAYPANEWIDTH, PLAYPANEHEIGHT));
         panel.setBackground(background);
-        panel.setLayout(new GridLayout(NUMROW, NUMCOL));
-        for (int i = 0; i < NUMROW; i++) {
-            for (int j = 0; j < NUMCOL; j++) {
-                panel.add(slots[i][j]);
-            }
-        }
+        panel.setLayout(new BorderLayout());
+        panel.add(boardView, BorderLayout.CENTER);
+
+        // Create the JLabel for the analysis of the running search
+        analysisLabel = new JLabel(" ", JLabel.CENTER);
+        analysisLabel.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        analysisLabel.setForeground(textcolor);
+        panel.add(analysisLabel, BorderLayout.SOUTH);
+
         return panel;
         
     }
@@ -320,7 +384,6 @@ public class OthelloGUI {
 
         // Create the JLabel for the nextPlayer
         nextPlayerIcon = new JLabel();
-        System.out.println(nextPlayerIcon.getAlignmentX());
         nextPlayerIcon.setAlignmentX(JLabel.CENTER_ALIGNMENT);
         nextPlayerIcon.setIcon(playerIcon[0]);
 
@@ -344,19 +407,7 @@ public class OthelloGUI {
 
             public void actionPerformed(ActionEvent e) {
 
-               // Get the number of pieces on the board
-               int[] points = game.getPoints();
-               int pointSum = 0;
-               for (int i = 0; i < NUMPLAYER; i++) { 
-                  pointSum += points[i];
-               }
-
-               // Set the depth to the desired depth or the number of empty slots left
-               int depth = Math.min(DEPTH, AREA - pointSum);
-               // Get the current state of the board
-               int[][] board = game.getBoard();
-               // Call the ai to make a move and play the move
-               game.play(AI.makeMove(game.getBoard(), game.currentPlayer(), depth));
+               playComputerMove(easyStrength);
 
             }
 
@@ -370,19 +421,7 @@ public class OthelloGUI {
         aiPlayerButtonHard.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
 
-               // Get the number of pieces on the board
-               int[] points = game.getPoints();
-               int pointSum = 0;
-               for (int i = 0; i < NUMPLAYER; i++) { 
-                  pointSum += points[i];
-               }
-
-               // Set the depth to the desired depth or the number of empty slots left
-               int depth = Math.min(BIGDEPTH, AREA - pointSum);
-               // Get the current state of the board
-               int[][] board = game.getBoard();
-               // Call the ai to make a move and play the move
-               game.play(AI.makeMove(game.getBoard(), game.currentPlayer(), depth));
+               playComputerMove(hardStrength);
 
             }
         });
@@ -391,6 +430,28 @@ public class OthelloGUI {
         aiPanel.add(aiPlayerButton); // Add the button
         aiPanel.add(aiPlayerButtonHard); // Add the hard button
 
+        // Create the toggle button to let the computer play both sides, game after game
+        autoplayButton = new JToggleButton("AUTOPLAY");
+        autoplayButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+
+               if (autoplayButton.isSelected()) {
+                  startAutoplay();
+               } else {
+                  autoplay.stop(); // Draws the final position when it has stopped
+               }
+
+            }
+        });
+
+        // Create the JLabel for the speed of autoplay
+        autoplayStats = new JLabel(" ", JLabel.CENTER);
+        autoplayStats.setFont(new Font("SansSerif", Font.PLAIN, 11));
+        autoplayStats.setForeground(textcolor);
+
+        aiPanel.add(autoplayButton); // Add the autoplay button
+        aiPanel.add(autoplayStats); // Add the autoplay speed
+
         panel.add(scorePanel); // Add the score panel
         panel.add(nextPanel); // Add the next panel
         panel.add(aiPanel); // Add the ai panel
@@ -400,20 +461,190 @@ public class OthelloGUI {
     }
 
     /**
-     * create the main frame
+     * Let the engine make the current move for the current player
+     * The search runs in the background while its analysis is shown over the board; the move is played when it is done.
+     * 
+     * @param  strength  how hard the engine searches
      */
-    private void createMainFrame() {
+    private void playComputerMove(int strength) {
+
+        if (computerMoving) {
+            return;
+        }
+        computerMoving = true;
+
+        // Between moves, so a reloaded engine can take over
+        Engine reloaded = nextEngine.getAndSet(null);
+        if (reloaded != null) {
+            engine.stop(); // Ends its pondering
+            engine = reloaded;
+        }
+        aiPlayerButton.setEnabled(false);
+        aiPlayerButtonHard.setEnabled(false);
+        autoplayButton.setEnabled(false);
+
+        // Show the analysis as it comes
+        analysisTimer = new javax.swing.Timer(ANALYSISDELAY, e -> showAnalysis(engine.analysis()));
+        analysisTimer.start();
+
+        int[][] board = game.getBoard();
+        int player = game.currentPlayer();
+        SwingWorker < int[], Void > worker = new SwingWorker < int[], Void > () {
+
+            protected int[] doInBackground() {
+
+               return engine.search(board, player, strength); // Call the ai to make a move
+
+            }
+
+            protected void done() {
+
+               analysisTimer.stop();
+               showAnalysis(engine.analysis());
+               boardView.setHeatMap(null); // The indicators are about to change
+               computerMoving = false;
+               aiPlayerButton.setEnabled(true);
+               aiPlayerButtonHard.setEnabled(true);
+               autoplayButton.setEnabled(true);
+
+               // Play the move
+               try {
+                  game.play(get());
+               } catch (Exception ex) {
+                  System.out.println("The search failed: " + ex);
+                  return;
+               }
+
+               // Search the human's likely replies until the next computer move
+               if (ponder) {
+                  engine.ponder(game.getBoard(), game.currentPlayer(), strength);
+               }
 
-        // Create the main Frame
-        mainFrame = new JFrame("Othello");
-        JPanel panel = (JPanel) mainFrame.getContentPane();
+            }
+
+        };
+        deck.search(worker); // On the search threads shared by every game
+
+    }
+
+    /**
+     * Show the analysis of a search: the root move scores as a heat map over the indicators,
+     * and the depth, speed and principal variation under the board
+     *
+     * @param  analysis  the snapshot of the search, null if there is none yet
+     */
+    private void showAnalysis(SearchAnalysis analysis) {
+
+        boardView.setHeatMap(analysis);
+        analysisLabel.setText(analysis == null ? " " : analysis.toString());
+
+    }
+
+    /**
+     * Gives whether the computer is making the moves, so clicks on the board are ignored
+     *
+     * @return true during autoplay, while the computer searches for a move, or once the match is over
+     */
+    public boolean isComputerPlaying() {
+
+        return computerMoving || isAutoplaying() || closeTimer != null;
+
+    }
+
+    /**
+     * Start playing the engines against each other until the end of the match
+     * Each side has its own engine from the engine1/strength1 and engine2/strength2 settings
+     * (by default the main engine, at the easy and the hard strength).
+     * The board is drawn from the latest position every frameBudget milliseconds, not after every move.
+     */
+    private void startAutoplay() {
+
+        if (autoplay == null || autoplayConfig != config) { // New engines for new settings
+            Engine[] engines = new Engine[NUMPLAYER];
+            int[] strengths = new int[NUMPLAYER];
+            for (int i = 0; i < NUMPLAYER; i++) {
+                engines[i] = createEngine(config, config.autoplayEngines[i]);
+                strengths[i] = config.autoplayStrengths[i];
+            }
+            autoplay = new Autoplay(game, engines, strengths);
+            autoplayConfig = config;
+        }
+
+        engine.stop(); // No pondering while the engines play each other
+        aiPlayerButton.setEnabled(false);
+        aiPlayerButtonHard.setEnabled(false);
+
+        frameTimer = new javax.swing.Timer(frameBudget, e -> drawAutoplayFrame());
+        frameTimer.start();
+
+        autoplay.start(() -> {
+            frameTimer.stop();
+            drawAutoplayFrame();
+            autoplayButton.setSelected(false);
+            aiPlayerButton.setEnabled(true);
+            aiPlayerButtonHard.setEnabled(true);
+            saveMatch(); // The position the playing stopped at
+        });
+
+    }
+
+    /**
+     * Draw the latest autoplay position, scores and speed
+     * Only the slots that changed since the last frame are repainted.
+     */
+    private void drawAutoplayFrame() {
+
+        int[][] board = autoplay.board();
+        for (int i = 0; i < NUMROW; i++) {
+            for (int j = 0; j < NUMCOL; j++) {
+                if (board[i][j] >= 0) {
+                    boardView.setPiece(i, j, board[i][j]);
+                } else if (board[i][j] == INDICATOR) {
+                    boardView.setIndicator(i, j);
+                } else {
+                    boardView.setEmpty(i, j);
+                }
+            }
+        }
+
+        int[] points = autoplay.points();
+        int[] scores = autoplay.scores();
+        for (int i = 0; i < NUMPLAYER; i++) {
+            playerPoints[i].setText(points[i] + "");
+            playerScore[i].setText(scores[i] + "");
+        }
+        nextPlayerIcon.setIcon(playerIcon[autoplay.player()]);
+
+        autoplayStats.setText(String.format("%.1f games/s, %d nodes/s", autoplay.gamesPerSecond(), autoplay.nodesPerSecond()));
+
+    }
+
+    /**
+     * Gives whether the engines are playing each other; the board is then drawn by the frame timer
+     *
+     * @return true during autoplay
+     */
+    public boolean isAutoplaying() {
+
+        return autoplay != null && autoplay.isRunning();
+
+    }
+
+    /**
+     * create the content of the game, shown by the deck
+     */
+    private void createContent() {
+
+        // Create the panel holding the whole game
+        content = new JPanel();
+        JPanel panel = content;
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
 
         // Create the panel for the logo
         JPanel logoPane = new JPanel();
         logoPane.setPreferredSize(new Dimension(LOGOWIDTH, LOGOHEIGHT));
         JLabel logo = new JLabel();
-        logo.setIcon(new ImageIcon(logoIcon));
+        logo.setIcon(Assets.shared().icon(logoIcon, LOGOWIDTH, LOGOHEIGHT, null));
         logoPane.add(logo);
         
         // Add a component listener to resize the banner
@@ -421,16 +652,7 @@ public class OthelloGUI {
 
             public void componentResized(ComponentEvent e) {
 
-               // Get the size of the panel
-               Rectangle r = logoPane.getBounds();
-               int height = r.height;
-               int width = r.width;
-
-               // Set the banner size
-               ImageIcon newIcon = new ImageIcon(logoIcon); // make a new image icon
-               Image image = newIcon.getImage(); // get the image from the reference icon
-               Image newimg = image.getScaledInstance(width, height, java.awt.Image.SCALE_SMOOTH); // scale the image 
-               logo.setIcon(new ImageIcon(newimg)); // set the image in the icon  
+               scaleLogo(logo, logoPane);
                
             }
             
@@ -443,6 +665,9 @@ public class OthelloGUI {
 
         });
 
+        // Scale the banner again once it is decoded
+        Assets.shared().load(logoIcon).thenRun(() -> SwingUtilities.invokeLater(() -> scaleLogo(logo, logoPane)));
+
         // Create the bottom Panel which contains the play panel and info Panel
         JPanel bottomPane = new JPanel();
         bottomPane.setLayout(new BoxLayout(bottomPane, BoxLayout.X_AXIS));
@@ -450,56 +675,63 @@ public class OthelloGUI {
         bottomPane.add(createPlayPanel());
         bottomPane.add(createInfoPanel());
 
-        // Add the logo and bottom panel to the main frame
+        // Create the panel for the notifications and the event log
+        eventLog = new EventLog(background, textcolor);
+        eventLog.setPreferredSize(new Dimension(LOGOWIDTH, EVENTLOGHEIGHT));
+
+        // Add the logo, bottom panel and event log to the game
         panel.add(logoPane);
         panel.add(bottomPane);
+        panel.add(eventLog);
 
-        mainFrame.setContentPane(panel);
-        //   mainFrame.setPreferredSize(new Dimension(FRAMEWIDTH, FRAMEHEIGHT));
-        mainFrame.setSize(FRAMEWIDTH, FRAMEHEIGHT);
-        mainFrame.setVisible(true);
+        panel.setPreferredSize(new Dimension(FRAMEWIDTH, FRAMEHEIGHT));
+
+    }
+
+    /**
+     * Scale the banner to the size of its panel
+     *
+     * @param  logo  the label showing the banner
+     * @param  logoPane  the panel of the banner
+     */
+    private void scaleLogo(JLabel logo, JPanel logoPane) {
+
+        // Get the size of the panel
+        Rectangle r = logoPane.getBounds();
+        int height = r.height;
+        int width = r.width;
+        if (width <= 0 || height <= 0) { // Not laid out yet
+            return;
+        }
 
-        mainFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        // Set the banner size
+        Image image = Assets.shared().imageNow(logoIcon, width, height); // the banner, or its placeholder while it loads
+        Image newimg = image.getScaledInstance(width, height, java.awt.Image.SCALE_SMOOTH); // scale the image 
+        logo.setIcon(new ImageIcon(newimg)); // set the image in the icon  
 
     }
 
     /**
-     * Returns the row number of where the given JLabel is on
+     * Returns the row number of the slot at a point on the game board
      * 
-     * @param  label  the label whose row number to be requested
-     * @return the row number
+     * @param  y  the vertical coordinate of the point
+     * @return the row number, -1 if the point is off the board
      */
-    public int getRow(JLabel label) {
+    public int getRow(int y) {
 
-        int result = -1;
-        for (int i = 0; i < NUMROW && result == -1; i++) {
-            for (int j = 0; j < NUMCOL && result == -1; j++) {
-                if (slots[i][j] == label) {
-                    result = i;
-                }
-            }
-        }
-        return result;
+        return boardView.rowAt(y);
 
     }
 
     /**
-     * Returns the column number of where the given JLabel is on
+     * Returns the column number of the slot at a point on the game board
      * 
-     * @param  label  the label whose column number to be requested
-     * @return the column number
+     * @param  x  the horizontal coordinate of the point
+     * @return the column number, -1 if the point is off the board
      */
-    public int getColumn(JLabel label) {
+    public int getColumn(int x) {
 
-        int result = -1;
-        for (int i = 0; i < NUMROW && result == -1; i++) {
-            for (int j = 0; j < NUMCOL && result == -1; j++) {
-                if (slots[i][j] == label) {
-                    result = j;
-                }
-            }
-        }
-        return result;
+        return boardView.colAt(x);
 
     }
 
@@ -508,11 +740,7 @@ public class OthelloGUI {
      */
     public void addListener(OthelloListener listener) {
 
-        for (int i = 0; i < NUMROW; i++) {
-            for (int j = 0; j < NUMCOL; j++) {
-                slots[i][j].addMouseListener(listener);
-            }
-        }
+        boardView.addMouseListener(listener);
 
     }
 
@@ -525,7 +753,11 @@ public class OthelloGUI {
      */
     public void setPiece(int row, int col, int player) {
 
-        slots[row][col].setIcon(playerIconVariable[player]);
+        if (isAutoplaying()) { // The frame timer draws the game
+            return;
+        }
+
+        boardView.setPiece(row, col, player);
 
     }
 
@@ -537,7 +769,11 @@ public class OthelloGUI {
      */
     public void setIndicator(int row, int col) {
 
-        slots[row][col].setIcon(indicatorIconVariable); // Display the icon
+        if (isAutoplaying()) { // The frame timer draws the game
+            return;
+        }
+
+        boardView.setIndicator(row, col); // Display the icon
     
     }
 
@@ -549,6 +785,10 @@ public class OthelloGUI {
      */
     public void setPlayerScore(int player, int score) {
 
+        if (isAutoplaying()) { // The frame timer draws the game
+            return;
+        }
+
         playerScore[player].setText(score + ""); // Change display's score
 
     }
@@ -561,6 +801,10 @@ public class OthelloGUI {
      */
     public void setPlayerPoints(int player, int points) { 
 
+        if (isAutoplaying()) { // The frame timer draws the game
+            return;
+        }
+
         playerPoints[player].setText(points + ""); // Change display's points
 
     }
@@ -572,6 +816,10 @@ public class OthelloGUI {
      */
     public void setNextPlayer(int player) {
 
+        if (isAutoplaying()) { // The frame timer draws the game
+            return;
+        }
+
         nextPlayerIcon.setIcon(playerIcon[player]);
 
     }
@@ -581,73 +829,200 @@ public class OthelloGUI {
      */
     public void resetGameBoard() {
 
-        for (int i = 0; i < NUMROW; i++) {
-            for (int j = 0; j < NUMCOL; j++) {
-                slots[i][j].setIcon(null);
+        if (isAutoplaying()) { // The frame timer draws the game
+            return;
+        }
+
+        boardView.clear();
+
+    }
+
+    /**
+     * Save the match after a move, if a save file is set, so it can be resumed after a restart
+     * During autoplay the moves come too fast to save each one, so only the end of a game is saved
+     * until the playing stops.
+     */
+    public void matchChanged() {
+
+        if (isAutoplaying()) {
+            int[] points = game.getPoints();
+            if (points[PLAYER1] + points[PLAYER2] != game.NUMINITIALCORDS) { // No new game has started
+                return;
+            }
+        }
+        saveMatch();
+
+    }
+
+    /*
+     * Save the match to the save file, if one is set
+     * A finished match is not resumed, so its save file is removed.
+     */
+    private void saveMatch() {
+
+        if (saveFile == null) {
+            return;
+        }
+        try {
+            int[] scores = game.getScores();
+            if (scores[PLAYER1] >= MAXGAME || scores[PLAYER2] >= MAXGAME) {
+                Files.deleteIfExists(saveFile);
+            } else {
+                MatchSnapshot.save(saveFile, game.getSnapshot());
             }
+        } catch (IOException iox) {
+            System.out.println("Match not saved: " + iox.getMessage());
         }
 
     }
 
     /**
-     * Display a pop up window displaying the message about invalid move
+     * Display a notification about an invalid move
      */
     public void showInvalidMoveMessage() {
 
-        JOptionPane.showMessageDialog(null, " This move is invalid", "Invalid Move", JOptionPane.PLAIN_MESSAGE, null);
+        eventLog.post("This move is invalid", null);
 
     }
 
     /**
-     * Display a pop up window specifying the number of opponents that was outflanked
+     * Display a notification specifying the number of opponents that was outflanked
      * 
      * @param  player  the player number who has outflanked opponents
      * @param  outflank  the number of opponents that were outflanked
      */
     public void showOutflankMessage(int player, int outflank) {
 
-        JOptionPane.showMessageDialog(null, " outflanked " + outflank + " opponents.", "OutFlank!", JOptionPane.PLAIN_MESSAGE, playerIcon[player]);
+        eventLog.post("Player " + (player + 1) + " outflanked " + outflank + " opponents.", iconCache.get(EVENTICONSIZE)[player]);
 
     }
 
     /**
-     * Display a pop up window displaying the message about a tie game
+     * Display a notification about a tie game
      */
     public void showTieGameMessage() {
 
-        JOptionPane.showMessageDialog(null, " This game is tie.", "Tie Game", JOptionPane.PLAIN_MESSAGE, null);
+        eventLog.post("This game is a tie.", null);
 
     }
 
     /**
-     * Display a pop up window specifying the winner of this game
+     * Display a notification specifying the winner of this game
      * 
      * @param  player  the player number of the winner of the game
      */
     public void showWinnerMessage(int player) {
 
-        JOptionPane.showMessageDialog(null, " won this game!", "This game has a winner!", JOptionPane.PLAIN_MESSAGE, playerIcon[player]);
+        eventLog.post("Player " + (player + 1) + " won this game!", iconCache.get(EVENTICONSIZE)[player]);
 
     }
 
     /**
-     * Display a pop up window specifying the winner of the match
+     * Display the winner of the match in the event log; the other games of the deck keep running
+     * Autoplay stops there; otherwise the game closes once the winner has been shown for CLOSEDELAY milliseconds.
      * 
      * @param  player  the player number of the winner of the match
      */
     public void showFinalWinnerMessage(int player) {
 
-        JOptionPane.showMessageDialog(null, " won the match with " + MAXGAME + " wins", "The match is finished", JOptionPane.PLAIN_MESSAGE, playerIcon[player]);
-        System.exit(0);
+        eventLog.post("Player " + (player + 1) + " won the match with " + MAXGAME + " wins", iconCache.get(EVENTICONSIZE)[player]);
+        if (isAutoplaying()) { // Stop at the end of the match
+            autoplay.finish();
+            return;
+        }
+
+        if (saveFile != null) { // The match is over, so there is nothing to resume
+            try {
+                Files.deleteIfExists(saveFile);
+            } catch (IOException iox) {
+                System.out.println("Saved match not removed: " + iox.getMessage());
+            }
+        }
+        aiPlayerButton.setEnabled(false); // Nothing more is played in this match
+        aiPlayerButtonHard.setEnabled(false);
+        autoplayButton.setEnabled(false);
+        closeTimer = new javax.swing.Timer(CLOSEDELAY, e -> deck.closeGame(this));
+        closeTimer.setRepeats(false);
+        closeTimer.start();
 
     }
 
     /**
-     * Create an OthelloGUI
+     * Gives everything of the game, to be shown in a tab or tile of the deck
+     *
+     * @return the panel of the game
+     */
+    public JPanel getContent() {
+
+        return content;
+
+    }
+
+    /**
+     * Stop the engine pondering, so a computer move of any game can have its thread
+     */
+    public void stopPondering() {
+
+        engine.stopPondering();
+
+    }
+
+    /*
+     * Create an engine for the board of this game that runs its background work on the search pool shared by every game
+     * The board keeps its size until restart, whatever size a reloaded config asks for.
+     *
+     * @param  engineConfig  the config the engine is made from
+     * @param  name  the engine
+     * @return the engine
+     */
+    private Engine createEngine(GameConfig engineConfig, String name) {
+
+        Engine created = engineConfig.createEngine(name, boardSize);
+        created.setExecutor(deck.searchExecutor());
+        return created;
+
+    }
+
+    /**
+     * Stop everything of the game that runs in the background, before it is closed
+     */
+    public void close() {
+
+        if (isAutoplaying()) {
+            autoplay.stop();
+        }
+        if (frameTimer != null) {
+            frameTimer.stop();
+        }
+        if (analysisTimer != null) {
+            analysisTimer.stop();
+        }
+        if (closeTimer != null) {
+            closeTimer.stop();
+        }
+        boardView.stop();
+        eventLog.stop();
+        engine.stop(); // Ends a search or its pondering
+        Engine reloaded = nextEngine.getAndSet(null);
+        if (reloaded != null) {
+            reloaded.stop();
+        }
+
+    }
+
+    /**
+     * Create the deck with the games of the config file
      */ 
     public static void main(String[] args) {
 
-        OthelloGUI gui = new OthelloGUI();
+        GameConfig config = null;
+        try {
+            config = GameConfig.load(Paths.get(CONFIGFILE));
+        } catch (IOException | IllegalArgumentException x) {
+            System.out.println("Config file not read: " + x.getMessage());
+            System.exit(1);
+        }
+        GameDeck deck = new GameDeck(config, Paths.get(CONFIGFILE));
 
     }
 
@@ -10,11 +10,15 @@
        }
 
        public void mouseClicked(MouseEvent event) {
-           JLabel label = (JLabel) event.getComponent();
-           int row = gui.getRow(label);
-           int column = gui.getColumn(label);
-           int[] move = new int[] {row, column};
-           game.play(move);
+           if (gui.isComputerPlaying()) { // The computer is making the move
+               return;
+           }
+           int row = gui.getRow(event.getY());
+           int column = gui.getColumn(event.getX());
+           if (row >= 0 && column >= 0) { // Ignore clicks off the board
+               int[] move = new int[] {row, column};
+               game.play(move);
+           }
        }
 
        public void mousePressed(MouseEvent event) {}
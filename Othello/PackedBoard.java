@@ -0,0 +1,285 @@
+/*
+ * PackedBoard.java
+ *
+ * The rules of the game on a packed board: one byte per slot in a single array, for a board of any size.
+ * The board is surrounded by BORDER slots (one column serves as both the right and the left border),
+ * so walking off the board stops on a border slot without any bounds checks,
+ * and a move copies one small array instead of a row array per row.
+ * The slot values are the same as in the int[][] board: PLAYER1, PLAYER2, EMPTY and INDICATOR.
+ * A PackedBoard object describes the layout for one board size; the boards themselves are byte arrays.
+ */
+
+public class PackedBoard {
+
+    private final static int NUMPLAYER = 2; // Number of players
+
+    private final static int INDICATOR = -2; // Represents valid-move indicator
+    private final static int EMPTY = -1; // Represents an empty slot
+
+    /**
+     * Represents a slot off the board
+     */
+    public final static int BORDER = -3;
+
+    /**
+     * Smallest and largest number of rows or columns supported
+     */
+    public final static int MINSIZE = 6;
+    public final static int MAXSIZE = 16;
+
+    /**
+     * Number of rows on the board
+     */
+    public final int rows;
+
+    /**
+     * Number of columns on the board
+     */
+    public final int cols;
+
+    /**
+     * Number of slots on the board
+     */
+    public final int area;
+
+    /**
+     * Length of the byte array holding a board
+     */
+    public final int length;
+
+    private final int width; // Distance between two rows in the array
+    private final int[] directions; // The array offsets of the eight neighbours of a slot
+
+    /**
+     * Constructor: works out the layout of a board
+     *
+     * @param  rows  the number of rows
+     * @param  cols  the number of columns
+     */
+    public PackedBoard(int rows, int cols) {
+
+        if (rows < MINSIZE || rows > MAXSIZE || cols < MINSIZE || cols > MAXSIZE) {
+            throw new IllegalArgumentException("Board size must be between " + MINSIZE + " and " + MAXSIZE + ": " + rows + "x" + cols);
+        }
+
+        this.rows = rows;
+        this.cols = cols;
+        area = rows * cols;
+        width = cols + 1;
+        length = (rows + 2) * width + 2;
+        directions = new int[] {1, -1, width, -width, width + 1, width - 1, -width + 1, -width - 1};
+
+    }
+
+    /**
+     * Give the array index of a slot
+     *
+     * @param  row  the row of the slot
+     * @param  col  the column of the slot
+     * @return the index of the slot in the array
+     */
+    public int index(int row, int col) {
+
+        return (row + 1) * width + col + 1;
+
+    }
+
+    /**
+     * Give the row of an array index
+     *
+     * @param  index  the index of a slot on the board
+     * @return the row of the slot
+     */
+    public int row(int index) {
+
+        return index / width - 1;
+
+    }
+
+    /**
+     * Give the column of an array index
+     *
+     * @param  index  the index of a slot on the board
+     * @return the column of the slot
+     */
+    public int col(int index) {
+
+        return index % width - 1;
+
+    }
+
+    /**
+     * Pack a board array
+     *
+     * @param  board  the state of the board
+     * @return the packed board
+     */
+    public byte[] fromBoard(int[][] board) {
+
+        byte[] packed = new byte[length];
+        java.util.Arrays.fill(packed, (byte) BORDER);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                packed[index(i, j)] = (byte) board[i][j];
+            }
+        }
+        return packed;
+
+    }
+
+    /**
+     * Unpack a board array
+     *
+     * @param  packed  the packed board
+     * @return the state of the board
+     */
+    public int[][] toBoard(byte[] packed) {
+
+        int[][] board = new int[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                board[i][j] = packed[index(i, j)];
+            }
+        }
+        return board;
+
+    }
+
+    /**
+     * Find the valid moves: every slot with an indicator
+     *
+     * @param  board  the packed board
+     * @param  moves  filled with the indices of the valid moves
+     * @return the number of valid moves
+     */
+    public int moves(byte[] board, int[] moves) {
+
+        int count = 0;
+        for (int i = width + 1; i < length - width - 1; i++) {
+            if (board[i] == INDICATOR) {
+                moves[count++] = i;
+            }
+        }
+        return count;
+
+    }
+
+    /**
+     * Copy a board and make a move on the copy: place the piece, outflank the enemy lines and add the new indicators
+     *
+     * @param  board  the packed board before the move
+     * @param  newBoard  filled with the packed board after the move
+     * @param  player  the player making the move
+     * @param  square  the index of the slot the move is made on
+     * @return the number of enemy pieces flipped
+     */
+    public int play(byte[] board, byte[] newBoard, int player, int square) {
+
+        System.arraycopy(board, 0, newBoard, 0, length);
+        byte own = (byte) player;
+        byte enemy = (byte) ((player + 1) % NUMPLAYER);
+        int flipped = 0;
+
+        newBoard[square] = own;
+
+        for (int d : directions) {
+            // Find the end of the continuous line of enemy pieces
+            int end = square + d;
+            while (newBoard[end] == enemy) {
+                end += d;
+            }
+            // Flip the line if it ends on a player piece
+            if (newBoard[end] == own) {
+                for (int i = square + d; i != end; i += d) {
+                    newBoard[i] = own;
+                    flipped++;
+                }
+            }
+            // The empty slots around the piece become valid moves
+            if (newBoard[square + d] == EMPTY) {
+                newBoard[square + d] = INDICATOR;
+            }
+        }
+
+        return flipped;
+
+    }
+
+    /**
+     * Generate the additional value of every slot for this board size
+     * Corners are worth the most; the slots next to them the least; the other edge slots a little;
+     * the second row and column from each edge a little less than nothing.
+     * On the 8x8 board this is the table the AI has always used.
+     *
+     * @return the additional value of each slot, by array index (0 off the board)
+     */
+    public int[] positionValues() {
+
+        int[] values = new int[length];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                int r = Math.min(i, rows - 1 - i); // Distance from the nearest top or bottom edge
+                int c = Math.min(j, cols - 1 - j); // Distance from the nearest left or right edge
+                int value;
+                if (r == 0 && c == 0) { // Corner
+                    value = 15;
+                } else if ((r == 0 && c == 1) || (r == 1 && c == 0)) { // Next to a corner on the edge
+                    value = -2;
+                } else if (r == 1 && c == 1) { // Diagonally next to a corner
+                    value = -4;
+                } else if ((r == 0 && c == 2) || (r == 2 && c == 0)) { // Two away from a corner on the edge
+                    value = 2;
+                } else if (r == 0 || c == 0) { // Other edge slots
+                    value = 1;
+                } else if (r == 1 || c == 1) { // Second row or column from an edge
+                    value = -1;
+                } else if (r == 2 && c == 2) { // Two away diagonally from a corner
+                    value = 2;
+                } else {
+                    value = 0;
+                }
+                values[index(i, j)] = value;
+            }
+        }
+        return values;
+
+    }
+
+    /**
+     * Give the array indices of the four corners
+     *
+     * @return the top left, top right, bottom left and bottom right corners
+     */
+    public int[] corners() {
+
+        return new int[] {index(0, 0), index(0, cols - 1), index(rows - 1, 0), index(rows - 1, cols - 1)};
+
+    }
+
+    /**
+     * Give the slots that lose their additional value once a corner is taken:
+     * the three by three block in the corner, except the corner itself
+     *
+     * @return the eight slots around each corner, in the order of corners()
+     */
+    public int[][] cornerRegions() {
+
+        int[][] regions = new int[4][8];
+        int[] cornerRows = {0, 0, rows - 3, rows - 3};
+        int[] cornerCols = {0, cols - 3, 0, cols - 3};
+        int[] corners = corners();
+        for (int k = 0; k < 4; k++) {
+            int count = 0;
+            for (int i = cornerRows[k]; i < cornerRows[k] + 3; i++) {
+                for (int j = cornerCols[k]; j < cornerCols[k] + 3; j++) {
+                    if (index(i, j) != corners[k]) {
+                        regions[k][count++] = index(i, j);
+                    }
+                }
+            }
+        }
+        return regions;
+
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Position.java
+ *
+ * An immutable position on the 8x8 board: the pieces of each player and the valid-move indicators as bitboards
+ * (see Bitboard), and the player to move. Positions with the same pieces, indicators and player to move are equal,
+ * and the hash is worked out once when the position is made, so positions can be used as keys of maps and sets
+ * as cheaply as the bitboards themselves. The board arrays used by Othello and AI convert both ways.
+ */
+
+public class Position {
+
+    private final static int NUMROW = 8; // Number of rows on the board
+    private final static int NUMCOL = 8; // Number of columns on the board
+    private final static int NUMPLAYER = 2; // Number of players
+
+    private final static int INDICATOR = -2; // Represents valid-move indicator
+    private final static int EMPTY = -1; // Represents an empty slot
+    private final static int PLAYER1 = 0; // Represents player 1
+    private final static int PLAYER2 = 1; // Represents player 2
+
+    private final long player1; // The pieces of player 1
+    private final long player2; // The pieces of player 2
+    private final long indicators; // The valid-move indicators
+    private final int player; // The player to move
+    private final int hash; // The hash code, worked out once
+
+    /**
+     * Constructor: makes a position from its bitboards
+     *
+     * @param  player1  the pieces of player 1
+     * @param  player2  the pieces of player 2
+     * @param  indicators  the valid-move indicators
+     * @param  player  the player to move
+     */
+    public Position(long player1, long player2, long indicators, int player) {
+
+        if ((player1 & player2) != 0 || ((player1 | player2) & indicators) != 0) {
+            throw new IllegalArgumentException("Two things on one slot");
+        }
+        if (player != PLAYER1 && player != PLAYER2) {
+            throw new IllegalArgumentException("Unknown player: " + player);
+        }
+
+        this.player1 = player1;
+        this.player2 = player2;
+        this.indicators = indicators;
+        this.player = player;
+
+        // Mix the bitboards so that positions a few pieces apart spread over the whole range
+        long h = player1 * 0x9e3779b97f4a7c15L;
+        h = (h ^ (h >>> 29) ^ player2) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 32) ^ indicators) * 0x94d049bb133111ebL;
+        h ^= h >>> 31;
+        hash = (int) (h ^ (h >>> 32)) ^ player;
+
+    }
+
+    /**
+     * Makes a position whose indicators are every empty slot next to a piece, as the rules place them
+     *
+     * @param  player1  the pieces of player 1
+     * @param  player2  the pieces of player 2
+     * @param  player  the player to move
+     * @return the position
+     */
+    public static Position of(long player1, long player2, int player) {
+
+        return new Position(player1, player2, Bitboard.moves(player1, player2), player);
+
+    }
+
+    /**
+     * Gives the starting position, player 1 to move
+     *
+     * @return the four pieces in the centre of the board with their indicators
+     */
+    public static Position start() {
+
+        long player1 = 1L << (3 * NUMCOL + 4) | 1L << (4 * NUMCOL + 3);
+        long player2 = 1L << (3 * NUMCOL + 3) | 1L << (4 * NUMCOL + 4);
+        return of(player1, player2, PLAYER1);
+
+    }
+
+    /**
+     * Makes a position from a board array
+     *
+     * @param  board  the state of the 8x8 board
+     * @param  player  the player to move
+     * @return the position
+     */
+    public static Position fromBoard(int[][] board, int player) {
+
+        if (board.length != NUMROW || board[0].length != NUMCOL) {
+            throw new IllegalArgumentException("Positions are 8x8, not " + board.length + "x" + board[0].length);
+        }
+
+        long player1 = 0;
+        long player2 = 0;
+        long indicators = 0;
+        for (int i = 0; i < NUMROW; i++) {
+            for (int j = 0; j < NUMCOL; j++) {
+                long bit = 1L << (i * NUMCOL + j);
+                if (board[i][j] == PLAYER1) {
+                    player1 |= bit;
+                } else if (board[i][j] == PLAYER2) {
+                    player2 |= bit;
+                } else if (board[i][j] == INDICATOR) {
+                    indicators |= bit;
+                }
+            }
+        }
+        return new Position(player1, player2, indicators, player);
+
+    }
+
+    /**
+     * Gives the position as a new board array
+     *
+     * @return the state of the board
+     */
+    public int[][] toBoard() {
+
+        int[][] board = new int[NUMROW][NUMCOL];
+        for (int i = 0; i < NUMROW; i++) {
+            for (int j = 0; j < NUMCOL; j++) {
+                long bit = 1L << (i * NUMCOL + j);
+                if ((player1 & bit) != 0) {
+                    board[i][j] = PLAYER1;
+                } else if ((player2 & bit) != 0) {
+                    board[i][j] = PLAYER2;
+                } else if ((indicators & bit) != 0) {
+                    board[i][j] = INDICATOR;
+                } else {
+                    board[i][j] = EMPTY;
+                }
+            }
+        }
+        return board;
+
+    }
+
+    /**
+     * Gives the position after the player to move makes a move, with the other player to move
+     *
+     * @param  row  the row of the move
+     * @param  col  the column of the move
+     * @return the new position
+     */
+    public Position play(int row, int col) {
+
+        int square = row * NUMCOL + col;
+        if ((indicators & 1L << square) == 0) {
+            throw new IllegalArgumentException("Not a valid move: " + SearchAnalysis.moveName(new int[] {row, col}));
+        }
+
+        long own = pieces(player);
+        long opp = pieces((player + 1) % NUMPLAYER);
+        long flipped = Bitboard.flips(own, opp, square);
+        own |= flipped | 1L << square;
+        opp &= ~flipped;
+
+        // The empty slots around the new piece become valid moves
+        long newIndicators = (indicators | Bitboard.neighbours(1L << square)) & ~(own | opp);
+
+        return player == PLAYER1 ? new Position(own, opp, newIndicators, PLAYER2) : new Position(opp, own, newIndicators, PLAYER1);
+
+    }
+
+    /**
+     * Gives a player's pieces
+     *
+     * @param  whose  the player
+     * @return the player's pieces as a bitboard
+     */
+    public long pieces(int whose) {
+
+        return whose == PLAYER1 ? player1 : player2;
+
+    }
+
+    /**
+     * Gives the valid-move indicators
+     *
+     * @return the indicators as a bitboard
+     */
+    public long indicators() {
+
+        return indicators;
+
+    }
+
+    /**
+     * Gives the player to move
+     *
+     * @return the player to move
+     */
+    public int player() {
+
+        return player;
+
+    }
+
+    /**
+     * Positions are equal if they have the same pieces, indicators and player to move
+     */
+    public boolean equals(Object other) {
+
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Position)) {
+            return false;
+        }
+        Position position = (Position) other;
+        return hash == position.hash && player1 == position.player1 && player2 == position.player2
+                && indicators == position.indicators && player == position.player;
+
+    }
+
+    /**
+     * Gives the hash code worked out when the position was made
+     */
+    public int hashCode() {
+
+        return hash;
+
+    }
+
+    /**
+     * Describe the position as PositionAnalyser reads it: a character per slot, then the player to move
+     */
+    public String toString() {
+
+        return PositionAnalyser.formatText(toBoard(), player);
+
+    }
+
+}
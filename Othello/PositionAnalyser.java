@@ -0,0 +1,426 @@
+/*
+ * PositionAnalyser.java
+ *
+ * Analyses positions from the command line, without the GUI, for labelling positions offline.
+ * Positions are streamed from a file (or standard input) and searched by the minimax bot on a pool of worker threads,
+ * each with its own AI and transposition table. Only a few positions per worker are read ahead of the searches,
+ * so the reader waits for the workers and the input is never held in memory, however long it is.
+ * Results are written as soon as each search finishes, so they are not in input order; each one starts with
+ * the number of its position in the input (from 1).
+ * With -seed every search is deterministic (see AI.setDeterministic) and the results are written in input order,
+ * so two runs to the same depth give the same output, whatever the number of threads.
+ *
+ * Text input holds one position per line: a character for every slot, row by row
+ * (X or 1 for player 1, O or 2 for player 2, anything else for an empty slot), so 64 characters on the 8x8 board,
+ * then optionally a space and the player to move (X/1 or O/2, player 1 if left out).
+ * Empty lines and lines starting with # are skipped.
+ * Binary input (-binary, 8x8 only) holds records of 17 bytes: player 1's bitboard and player 2's bitboard
+ * as big-endian longs with bit (row * 8 + col) set for every piece, then the player to move (0 or 1).
+ *
+ * Each result line holds: position, best move (like c4, - if the board is full), score for the player to move,
+ * depth reached, nodes searched.
+ *
+ * Usage: java PositionAnalyser [-depth plies | -time milliseconds] [-threads n] [-tablebits bits] [-seed n] [-binary]
+ *                              [input file, - for standard input] [output file]
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class PositionAnalyser {
+
+    private final static int NUMPLAYER = 2; // Number of players
+
+    private final static int INDICATOR = -2; // Represents valid-move indicator
+    private final static int EMPTY = -1; // Represents an empty slot
+    private final static int PLAYER1 = 0; // Represents player 1
+    private final static int PLAYER2 = 1; // Represents player 2
+
+    private final static int RECORDSIZE = 17; // Bytes in a binary record: two bitboards and the player to move
+    private final static int READAHEAD = 4; // Positions read ahead of the searches per worker
+    private final static int DEFAULTDEPTH = 6; // Search depth if neither a depth nor a time is given
+    private final static int DEFAULTTABLEBITS = 18; // Each worker's transposition table has 2 to the power of this many slots
+
+    private final int depth; // The search depth, if searching by depth
+    private final long millis; // The time for each search, 0 if searching by depth
+    private final int tableBits; // Size of each worker's transposition table
+    private final ExecutorService workers; // Search the positions
+    private final ScheduledExecutorService timer; // Stops the searches that are out of time, null if searching by depth
+    private final Semaphore inFlight; // A permit for every position read ahead of the searches
+    private final ThreadLocal < AI > engines; // The bot of each worker
+    private final PrintWriter out; // Where the results go
+    private final boolean ordered; // Whether the results are written in input order
+    private final TreeMap < Long, String > waiting = new TreeMap < Long, String > (); // Results ahead of the next one to write, guarded by out
+    private long nextNumber = 1; // The number of the next result to write in input order
+    private volatile Throwable failure; // The first error of a worker, null if none
+
+    /*
+     * A position waiting to be searched
+     */
+    static class Job {
+
+        final int[][] board; // The position, with its indicators
+        final int player; // The player to move
+
+        Job(int[][] board, int player) {
+            this.board = board;
+            this.player = player;
+        }
+
+    }
+
+    /*
+     * Read the options, analyse every position in the input and write the results
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        int depth = DEFAULTDEPTH;
+        long millis = 0;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        int tableBits = DEFAULTTABLEBITS;
+        boolean binary = false;
+        Long seed = null;
+        ArrayList < String > files = new ArrayList < String > ();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-depth": depth = Integer.parseInt(args[++i]); millis = 0; break;
+                case "-time": millis = Long.parseLong(args[++i]); break;
+                case "-threads": numThreads = Integer.parseInt(args[++i]); break;
+                case "-tablebits": tableBits = Integer.parseInt(args[++i]); break;
+                case "-seed": seed = Long.parseLong(args[++i]); break;
+                case "-binary": binary = true; break;
+                default: files.add(args[i]);
+            }
+        }
+
+        InputStream in = files.isEmpty() || files.get(0).equals("-") ? System.in : new FileInputStream(files.get(0));
+        OutputStream out = files.size() > 1 ? new FileOutputStream(files.get(1)) : System.out;
+
+        PositionAnalyser analyser = new PositionAnalyser(depth, millis, numThreads, tableBits, seed, out);
+        long start = System.currentTimeMillis();
+        long count = binary ? analyser.analyseBinary(in) : analyser.analyseText(in);
+        analyser.finish();
+        in.close();
+
+        System.err.println(count + " positions read in " + (System.currentTimeMillis() - start) + " ms.");
+
+    }
+
+    /*
+     * Constructor: starts the workers
+     *
+     * @param  depth  the search depth, used if millis is 0
+     * @param  millis  the time for each search in milliseconds, 0 to search by depth
+     * @param  numThreads  the number of workers
+     * @param  tableBits  each worker's transposition table has 2 to the power of this many slots
+     * @param  seed  the seed of deterministic searches with results in input order, null for neither
+     * @param  out  where the results go
+     */
+    public PositionAnalyser(int depth, long millis, int numThreads, int tableBits, Long seed, OutputStream out) {
+
+        this.depth = depth;
+        this.millis = millis;
+        this.tableBits = tableBits;
+        ordered = seed != null;
+        this.out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out)));
+        this.out.println("# position move score depth nodes");
+
+        workers = Executors.newFixedThreadPool(Math.max(1, numThreads));
+        timer = millis > 0 ? Executors.newSingleThreadScheduledExecutor() : null;
+        inFlight = new Semaphore(Math.max(1, numThreads) * READAHEAD);
+        engines = ThreadLocal.withInitial(() -> {
+            AI ai = new AI();
+            ai.setTableBits(this.tableBits);
+            if (seed != null) {
+                ai.setDeterministic(seed);
+            }
+            return ai;
+        });
+
+    }
+
+    /*
+     * Analyse the positions of a text input, one per line
+     *
+     * @param  in  the input
+     * @return the number of positions read
+     */
+    public long analyseText(InputStream in) throws IOException, InterruptedException {
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        long count = 0;
+        String line = reader.readLine();
+        while (line != null && failure == null) {
+            line = line.trim();
+            if (line.length() > 0 && !line.startsWith("#")) {
+                count++;
+                Job job = null;
+                try {
+                    job = parseText(line);
+                } catch (IllegalArgumentException iax) {
+                    System.err.println("Position " + count + " is malformed: " + iax.getMessage());
+                }
+                submit(count, job);
+            }
+            line = reader.readLine();
+        }
+        return count;
+
+    }
+
+    /*
+     * Analyse the positions of a binary input, RECORDSIZE bytes each
+     *
+     * @param  in  the input
+     * @return the number of positions read
+     */
+    public long analyseBinary(InputStream in) throws IOException, InterruptedException {
+
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        byte[] record = new byte[RECORDSIZE];
+        long count = 0;
+        while (failure == null) {
+            try {
+                data.readFully(record);
+            } catch (EOFException eofx) { // The end of the input, or a cut-off last record
+                break;
+            }
+            count++;
+            long[] pieces = new long[NUMPLAYER];
+            for (int i = 0; i < 16; i++) {
+                pieces[i / 8] = pieces[i / 8] << 8 | (record[i] & 0xff);
+            }
+            Job job = null;
+            try {
+                Position position = Position.of(pieces[PLAYER1], pieces[PLAYER2], record[16]);
+                job = new Job(position.toBoard(), position.player());
+            } catch (IllegalArgumentException iax) {
+                System.err.println("Position " + count + " is malformed: " + iax.getMessage());
+            }
+            submit(count, job);
+        }
+        return count;
+
+    }
+
+    /*
+     * Wait for the searches still running, then shut the workers down and flush the results
+     */
+    public void finish() throws InterruptedException {
+
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        if (timer != null) {
+            timer.shutdown();
+        }
+        out.flush();
+        if (failure != null) {
+            throw new IllegalStateException("A search failed", failure);
+        }
+
+    }
+
+    /*
+     * Hand a position to the workers, waiting while too many are read ahead of the searches
+     * A malformed position still takes its turn, so the results in input order do not wait for it.
+     *
+     * @param  number  the number of the position in the input
+     * @param  job  the position, null if it was malformed
+     */
+    private void submit(long number, Job job) throws InterruptedException {
+
+        inFlight.acquire();
+        if (job == null) {
+            write(number, null);
+            return;
+        }
+        workers.execute(() -> {
+            String result = null;
+            try {
+                result = analyse(number, job.board, job.player);
+            } catch (Throwable tx) {
+                failure = tx;
+            } finally {
+                write(number, result);
+            }
+        });
+
+    }
+
+    /*
+     * Write a result, or hold it back until the results before it are written when they go in input order
+     * The position's permit is given back once its result is written, so the results held back stay
+     * within the positions read ahead.
+     *
+     * @param  number  the number of the position in the input
+     * @param  result  the result line, null if there is none
+     */
+    private void write(long number, String result) {
+
+        synchronized (out) {
+            if (!ordered) {
+                if (result != null) {
+                    out.println(result);
+                }
+                inFlight.release();
+                return;
+            }
+            waiting.put(number, result == null ? "" : result);
+            while (waiting.containsKey(nextNumber)) {
+                String next = waiting.remove(nextNumber);
+                if (!next.isEmpty()) {
+                    out.println(next);
+                }
+                nextNumber++;
+                inFlight.release();
+            }
+        }
+
+    }
+
+    /*
+     * Search a position with the worker's bot
+     *
+     * @param  number  the number of the position in the input
+     * @param  board  the position
+     * @param  player  the player to move
+     * @return the result line
+     */
+    private String analyse(long number, int[][] board, int player) {
+
+        AI ai = engines.get();
+        int[] move;
+        if (millis > 0) {
+            ScheduledFuture < ? > stop = timer.schedule(ai::stop, millis, TimeUnit.MILLISECONDS);
+            move = ai.search(board, player, board.length * board[0].length);
+            stop.cancel(false);
+        } else {
+            move = ai.search(board, player, depth);
+        }
+
+        SearchStats stats = ai.stats();
+        String name = move == null ? "-" : SearchAnalysis.moveName(move);
+        return number + " " + name + " " + ai.score() + " " + stats.depth + " " + stats.nodes;
+
+    }
+
+    /*
+     * Read a position written as a character per slot, then optionally the player to move
+     *
+     * @param  line  the line of text
+     * @return the position
+     */
+    static Job parseText(String line) {
+
+        String[] fields = line.split("\\s+");
+        String slots = fields[0];
+        int size = (int) Math.round(Math.sqrt(slots.length()));
+        if (size * size != slots.length() || size < PackedBoard.MINSIZE || size > PackedBoard.MAXSIZE || size % 2 != 0) {
+            throw new IllegalArgumentException("not a square board of a playable size");
+        }
+
+        int player = PLAYER1;
+        if (fields.length > 1) {
+            player = pieceOf(fields[1].charAt(0));
+            if (player == EMPTY) {
+                throw new IllegalArgumentException("unknown player to move " + fields[1]);
+            }
+        }
+
+        // Place the pieces, then an indicator on every empty slot next to one
+        int[][] board = new int[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                board[i][j] = pieceOf(slots.charAt(i * size + j));
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (board[i][j] == EMPTY && nextToPiece(board, i, j)) {
+                    board[i][j] = INDICATOR;
+                }
+            }
+        }
+
+        return new Job(board, player);
+
+    }
+
+    /*
+     * Give the starting position of a board: four pieces in the centre, player 1 to move
+     *
+     * @param  size  the number of rows and columns
+     * @return the position
+     */
+    static Job startingPosition(int size) {
+
+        char[] slots = new char[size * size];
+        Arrays.fill(slots, '-');
+        int centre = size / 2;
+        slots[(centre - 1) * size + centre - 1] = 'O';
+        slots[(centre - 1) * size + centre] = 'X';
+        slots[centre * size + centre - 1] = 'X';
+        slots[centre * size + centre] = 'O';
+        return parseText(new String(slots) + " X");
+
+    }
+
+    /*
+     * Write a position as parseText reads it: a character per slot, a space and the player to move
+     *
+     * @param  board  the position
+     * @param  player  the player to move
+     * @return the line of text
+     */
+    static String formatText(int[][] board, int player) {
+
+        StringBuilder line = new StringBuilder();
+        for (int[] row : board) {
+            for (int slot : row) {
+                line.append(slot == PLAYER1 ? 'X' : slot == PLAYER2 ? 'O' : '-');
+            }
+        }
+        return line.append(player == PLAYER1 ? " X" : " O").toString();
+
+    }
+
+    /*
+     * Read the piece on a slot
+     *
+     * @param  c  the character of the slot
+     * @return the player whose piece it is, EMPTY if none
+     */
+    private static int pieceOf(char c) {
+
+        switch (c) {
+            case 'X': case 'x': case '1': return PLAYER1;
+            case 'O': case 'o': case '2': return PLAYER2;
+            default: return EMPTY;
+        }
+
+    }
+
+    /*
+     * Determine whether a slot is next to a piece
+     *
+     * @param  board  the board
+     * @param  row  the row of the slot
+     * @param  col  the column of the slot
+     * @return whether any of the eight slots around it has a piece
+     */
+    private static boolean nextToPiece(int[][] board, int row, int col) {
+
+        for (int i = Math.max(0, row - 1); i <= Math.min(board.length - 1, row + 1); i++) {
+            for (int j = Math.max(0, col - 1); j <= Math.min(board[i].length - 1, col + 1); j++) {
+                if (board[i][j] >= 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * ProbCutCalibration.java
+ *
+ * Fits the parameters that the AI's Multi-ProbCut mode uses to predict deep search scores from shallow ones.
+ * Positions are collected from self-play games; each one is searched at every depth from 1 to the maximum depth.
+ * For every depth, shallow depth (two plies less) and game stage, the deep scores are fitted to
+ * the shallow scores with a least-squares line v = a*v' + b, and sigma is the standard deviation of the error.
+ *
+ * Usage: java ProbCutCalibration [games] [maximum depth] [output file]
+ */
+
+import java.io.*;
+import java.util.*;
+
+public class ProbCutCalibration {
+
+    private final static int NUMPLAYER = 2; // Number of players
+    private final static int NUMROW = 8; // Number of rows on the board
+    private final static int NUMCOL = 8; // Number of columns on the board
+    private final static int AREA = NUMROW*NUMCOL; // Area of the board
+
+    private final static int INDICATOR = -2; // Represents valid-move indicator
+    private final static int EMPTY = -1; // Represents an empty slot
+    private final static int PLAYER1 = 0; // Represents player 1
+    private final static int PLAYER2 = 1; // Represents player 2
+
+    private final static int NUMSTAGES = 4; // Number of game stages, must match AI
+    private final static int MINDEPTH = 3; // Shallowest depth to fit, must match AI
+    private final static int DEPTHGAP = 2; // How many plies shallower the shallow search is
+
+    private final static int RANDOMOPENING = 6; // Number of random moves at the start of every game
+    private final static double RANDOMMOVERATE = 0.2; // Chance of a random move after the opening
+    private final static double SAMPLERATE = 0.25; // Chance of a position being used for fitting
+    private final static int SELFPLAYDEPTH = 2; // Depth of the self-play moves
+
+    /*
+     * Play the self-play games, fit the parameters and write them to the output file
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static void main(String[] args) throws IOException {
+
+        int numGames = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        int maxDepth = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        String outFile = args.length > 2 ? args[2] : "probcut.txt";
+
+        Random random = new Random(1);
+
+        // Shallow and deep scores for each depth and stage
+        ArrayList < int[] > [][] samples = new ArrayList[maxDepth + 1][NUMSTAGES];
+        for (int d = 0; d <= maxDepth; d++) {
+            for (int s = 0; s < NUMSTAGES; s++) {
+                samples[d][s] = new ArrayList < int[] > ();
+            }
+        }
+
+        for (int game = 0; game < numGames; game++) {
+
+            int[][] board = initialBoard();
+            int player = PLAYER1;
+
+            for (int move = 0; move < AREA - 4; move++) {
+
+                int empty = AREA - 4 - move; // Empty slots left
+
+                // Score the position at every depth and pair them up
+                if (random.nextDouble() < SAMPLERATE) {
+                    int stage = AI.stage(board);
+                    int[] scores = new int[maxDepth + 1];
+                    for (int d = 1; d <= Math.min(maxDepth, empty); d++) {
+                        scores[d] = AI.exactScore(board, player, d);
+                    }
+                    for (int d = MINDEPTH; d <= Math.min(maxDepth, empty); d++) {
+                        samples[d][stage].add(new int[] {scores[d - DEPTHGAP], scores[d]});
+                    }
+                }
+
+                // Play the next self-play move
+                int[] next;
+                if (move < RANDOMOPENING || random.nextDouble() < RANDOMMOVERATE) {
+                    ArrayList < int[] > moves = AI.allPossibleMoves(board, player);
+                    next = moves.get(random.nextInt(moves.size()));
+                } else {
+                    next = new AI().search(board, player, SELFPLAYDEPTH);
+                }
+                board = AI.boardAfterMove(board, player, next);
+                player = (player + 1) % NUMPLAYER;
+
+            }
+
+            System.out.println("Game " + (game + 1) + " of " + numGames + " played.");
+
+        }
+
+        // Fit and write the parameters
+        PrintWriter out = new PrintWriter(new FileWriter(outFile));
+        out.println("# depth shallow stage a b sigma");
+        for (int d = MINDEPTH; d <= maxDepth; d++) {
+            for (int s = 0; s < NUMSTAGES; s++) {
+                double[] fit = fit(samples[d][s]);
+                if (fit != null) {
+                    out.println(String.format("%d %d %d %.4f %.4f %.4f", d, d - DEPTHGAP, s, fit[0], fit[1], fit[2]));
+                }
+            }
+        }
+        out.close();
+
+        System.out.println("Parameters written to " + outFile + ".");
+
+    }
+
+    /*
+     * Fit the deep scores to the shallow scores with a least-squares line
+     *
+     * @param  pairs  the shallow and deep score of each sample
+     * @return a, b and sigma, or null if there are too few samples
+     */
+    private static double[] fit(ArrayList < int[] > pairs) {
+
+        int n = pairs.size();
+        if (n < 10) {
+            return null;
+        }
+
+        // Means
+        double meanShallow = 0;
+        double meanDeep = 0;
+        for (int[] pair : pairs) {
+            meanShallow += pair[0];
+            meanDeep += pair[1];
+        }
+        meanShallow /= n;
+        meanDeep /= n;
+
+        // Covariance and variance
+        double covariance = 0;
+        double variance = 0;
+        for (int[] pair : pairs) {
+            covariance += (pair[0] - meanShallow) * (pair[1] - meanDeep);
+            variance += (pair[0] - meanShallow) * (pair[0] - meanShallow);
+        }
+        if (variance == 0) {
+            return null;
+        }
+
+        double a = covariance / variance;
+        double b = meanDeep - a * meanShallow;
+
+        // Standard deviation of the error
+        double error = 0;
+        for (int[] pair : pairs) {
+            double residual = pair[1] - (a * pair[0] + b);
+            error += residual * residual;
+        }
+        double sigma = Math.sqrt(error / (n - 2));
+
+        return new double[] {a, b, sigma};
+
+    }
+
+    /*
+     * Set up the board to the starting formation with its indicators
+     *
+     * @return the starting position
+     */
+    private static int[][] initialBoard() {
+
+        int[][] board = new int[NUMROW][NUMCOL];
+        for (int i = 0; i < NUMROW; i++) {
+            for (int j = 0; j < NUMCOL; j++) {
+                board[i][j] = EMPTY;
+            }
+        }
+
+        board[3][3] = PLAYER2;
+        board[4][3] = PLAYER1;
+        board[3][4] = PLAYER1;
+        board[4][4] = PLAYER2;
+
+        // Every empty slot next to a starting piece is a valid move
+        for (int i = 2; i <= 5; i++) {
+            for (int j = 2; j <= 5; j++) {
+                if (board[i][j] == EMPTY) {
+                    board[i][j] = INDICATOR;
+                }
+            }
+        }
+
+        return board;
+
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * SearchAnalysis.java
+ *
+ * A snapshot of a running search, for display: the score of every root move, the depth reached,
+ * the principal variation and the speed. Snapshots are immutable, so the searching thread can hand them
+ * to the GUI through a single reference without any locking.
+ */
+
+public class SearchAnalysis {
+
+    /**
+     * The depth of the iteration the scores are from
+     */
+    public final int depth;
+
+    /**
+     * The root moves (row, column), in the order they are searched
+     */
+    public final int[][] moves;
+
+    /**
+     * The score of each root move for the player to move; a move that was not searched yet is not scored
+     */
+    public final int[] scores;
+
+    /**
+     * Whether each score is exact; the other scores are upper bounds (the move was proved to be no better than the best)
+     */
+    public final boolean[] exact;
+
+    /**
+     * Whether each root move has been searched at this depth
+     */
+    public final boolean[] searched;
+
+    /**
+     * The best line of play found (row, column of each move)
+     */
+    public final int[][] principalVariation;
+
+    /**
+     * Nodes searched so far
+     */
+    public final long nodes;
+
+    /**
+     * Milliseconds since the search started
+     */
+    public final long millis;
+
+    /**
+     * Constructor: creates a snapshot; the arrays are kept, so they must not be changed afterwards
+     */
+    public SearchAnalysis(int depth, int[][] moves, int[] scores, boolean[] exact, boolean[] searched, int[][] principalVariation, long nodes, long millis) {
+
+        this.depth = depth;
+        this.moves = moves;
+        this.scores = scores;
+        this.exact = exact;
+        this.searched = searched;
+        this.principalVariation = principalVariation;
+        this.nodes = nodes;
+        this.millis = millis;
+
+    }
+
+    /**
+     * Gives the number of nodes searched per second
+     *
+     * @return the nodes per second, 0 if no time has passed
+     */
+    public long nodesPerSecond() {
+
+        return millis > 0 ? nodes * 1000 / millis : 0;
+
+    }
+
+    /**
+     * Gives the name of a move: the column as a letter and the row as a number, like c4
+     *
+     * @param  move  the row and column
+     * @return the name of the move
+     */
+    public static String moveName(int[] move) {
+
+        return (char) ('a' + move[1]) + "" + (move[0] + 1);
+
+    }
+
+    /**
+     * Describe the snapshot in one line
+     */
+    public String toString() {
+
+        StringBuilder line = new StringBuilder("Depth " + depth + ", nps: " + nodesPerSecond() + ", PV:");
+        for (int[] move : principalVariation) {
+            line.append(' ').append(moveName(move));
+        }
+        return line.toString();
+
+    }
+
+}
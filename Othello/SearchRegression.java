@@ -0,0 +1,219 @@
+/*
+ * SearchRegression.java
+ *
+ * Checks that the minimax bot still finds the same moves: every position of a golden file is searched
+ * in deterministic mode (see AI.setDeterministic) and the best move and score are compared with the ones
+ * recorded in the file. A change that only makes the search faster must leave every result the same;
+ * the nodes and time are reported so the speed-up can be seen too.
+ *
+ * The golden file holds one position per line: the position and player as PositionAnalyser reads them,
+ * then the depth, the seed, the expected best move (- if the board is full) and the expected score.
+ * Lines starting with # are comments.
+ *
+ * Usage: java SearchRegression [-update] [-generate count] [-size n] [-depth plies] [-seed n] [-trace file] [-workers list] [golden file]
+ *   -update rewrites the expected results with the ones found now, after a change that is meant to alter them
+ *   -generate adds count positions reached by random play (from -seed) on an n x n board, searched to -depth
+ *   -trace logs every root move searched, position by position, to compare two versions line by line
+ *   -workers searches with DistributedSearch on the SearchWorker processes at host:port,host:port,...
+ *            instead of in this process, to check it against the single-process results (move and score)
+ * The exit status is 1 if any result differs.
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class SearchRegression {
+
+    private final static int NUMPLAYER = 2; // Number of players
+
+    private final static String GOLDENFILE = "golden.txt"; // The golden file if none is given
+    private final static int DEFAULTDEPTH = 5; // Depth of the generated positions
+    private final static int DEFAULTSEED = 1; // Seed of the random play and the tie-breaking of generated positions
+
+    /*
+     * Read the options, then generate positions or check (or update) the golden file
+     */
+    public static void main(String[] args) throws IOException {
+
+        boolean update = false;
+        int generate = 0;
+        int size = 8;
+        int depth = DEFAULTDEPTH;
+        long seed = DEFAULTSEED;
+        PrintWriter trace = null;
+        DistributedSearch distributed = null;
+        Path golden = Paths.get(GOLDENFILE);
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-update": update = true; break;
+                case "-generate": generate = Integer.parseInt(args[++i]); break;
+                case "-size": size = Integer.parseInt(args[++i]); break;
+                case "-depth": depth = Integer.parseInt(args[++i]); break;
+                case "-seed": seed = Long.parseLong(args[++i]); break;
+                case "-trace": trace = new PrintWriter(new BufferedWriter(new FileWriter(args[++i]))); break;
+                case "-workers": distributed = new DistributedSearch(args[++i].split(",")); break;
+                default: golden = Paths.get(args[i]);
+            }
+        }
+
+        if (generate > 0) {
+            generate(golden, generate, size, depth, seed);
+            return;
+        }
+
+        if (!Files.exists(golden)) {
+            System.out.println("Golden file " + golden + " not found.");
+            System.exit(1);
+        }
+        if (update && distributed != null) {
+            System.out.println("The golden file is only updated from searches in this process.");
+            System.exit(1);
+        }
+        int differences = check(golden, update, trace, distributed);
+        if (trace != null) {
+            trace.close();
+        }
+        System.exit(differences > 0 && !update ? 1 : 0);
+
+    }
+
+    /*
+     * Search every position of the golden file and compare the results with the expected ones
+     *
+     * @param  golden  the golden file
+     * @param  update  whether to write the results found back to the file instead of failing on differences
+     * @param  trace  where the root moves of every search are logged, null for no trace
+     * @param  distributed  the workers that search the positions, null to search them in this process
+     * @return the number of positions whose result differs
+     */
+    private static int check(Path golden, boolean update, PrintWriter trace, DistributedSearch distributed) throws IOException {
+
+        List < String > lines = Files.readAllLines(golden);
+        ArrayList < String > updated = new ArrayList < String > ();
+        int positions = 0;
+        int differences = 0;
+        long nodes = 0;
+        long start = System.currentTimeMillis();
+
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                updated.add(line);
+                continue;
+            }
+            positions++;
+
+            String[] fields = trimmed.split("\\s+");
+            if (fields.length != 6) {
+                throw new IllegalArgumentException("Line " + positions + " of " + golden + " does not have 6 fields: " + line);
+            }
+            PositionAnalyser.Job job = PositionAnalyser.parseText(fields[0] + " " + fields[1]);
+            int depth = Integer.parseInt(fields[2]);
+            long seed = Long.parseLong(fields[3]);
+
+            if (trace != null) {
+                trace.println("position " + positions + " " + fields[0] + " " + fields[1] + " depth " + depth);
+            }
+            String[] result = distributed != null ? search(distributed, job.board, job.player, depth, seed)
+                    : search(job.board, job.player, depth, seed, trace);
+            nodes += Long.parseLong(result[2]);
+
+            if (!result[0].equals(fields[4]) || !result[1].equals(fields[5])) {
+                differences++;
+                System.out.println("Position " + positions + ": expected " + fields[4] + " " + fields[5] + ", found " + result[0] + " " + result[1]);
+            }
+            updated.add(fields[0] + " " + fields[1] + " " + depth + " " + seed + " " + result[0] + " " + result[1]);
+        }
+
+        System.out.println(positions + " positions, " + differences + " different, " + nodes + " nodes in "
+                + (System.currentTimeMillis() - start) + " ms.");
+        if (update && differences > 0) {
+            Files.write(golden, updated);
+            System.out.println("Golden file updated.");
+        }
+        return differences;
+
+    }
+
+    /*
+     * Search a position deterministically
+     *
+     * @param  board  the position
+     * @param  player  the player to move
+     * @param  depth  the depth of the search
+     * @param  seed  the seed of the tie-breaking
+     * @param  trace  where the root moves are logged, null for no trace
+     * @return the best move (- if the board is full), the score and the nodes searched
+     */
+    private static String[] search(int[][] board, int player, int depth, long seed, PrintWriter trace) {
+
+        AI ai = new AI();
+        ai.setDeterministic(seed);
+        ai.setTrace(trace);
+        int[] move = ai.search(board, player, depth);
+        String name = move == null ? "-" : SearchAnalysis.moveName(move);
+        return new String[] {name, ai.score() + "", ai.stats().nodes + ""};
+
+    }
+
+    /*
+     * Search a position deterministically on the workers
+     *
+     * @param  distributed  the workers
+     * @param  board  the position
+     * @param  player  the player to move
+     * @param  depth  the depth of the search
+     * @param  seed  the seed of the tie-breaking
+     * @return the best move (- if the board is full), the score and the nodes searched
+     */
+    private static String[] search(DistributedSearch distributed, int[][] board, int player, int depth, long seed) {
+
+        distributed.setDeterministic(seed);
+        int[] move = distributed.search(board, player, depth);
+        if (move == null) {
+            return new String[] {"-", "0", "0"};
+        }
+        return new String[] {SearchAnalysis.moveName(move), distributed.score() + "", distributed.stats().nodes + ""};
+
+    }
+
+    /*
+     * Add positions reached by random play to the golden file, with the results found now
+     *
+     * @param  golden  the golden file, created if needed
+     * @param  count  the number of positions
+     * @param  size  the number of rows and columns of the board
+     * @param  depth  the depth of the searches
+     * @param  seed  the seed of the random play and of the tie-breaking
+     */
+    private static void generate(Path golden, int count, int size, int depth, long seed) throws IOException {
+
+        Random random = new Random(seed);
+        ArrayList < String > lines = new ArrayList < String > ();
+        if (!Files.exists(golden)) {
+            lines.add("# position player depth seed move score");
+        }
+
+        for (int n = 0; n < count; n++) {
+            // Play a random number of random moves from the starting position
+            int[][] board = PositionAnalyser.startingPosition(size).board;
+            int player = 0;
+            int plies = random.nextInt(size * size - 6);
+            for (int ply = 0; ply < plies; ply++) {
+                ArrayList < int[] > moves = AI.allPossibleMoves(board, player);
+                board = AI.boardAfterMove(board, player, moves.get(random.nextInt(moves.size())));
+                player = (player + 1) % NUMPLAYER;
+            }
+
+            String[] result = search(board, player, depth, seed, null);
+            lines.add(PositionAnalyser.formatText(board, player) + " " + depth + " " + seed + " " + result[0] + " " + result[1]);
+        }
+
+        Files.write(golden, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        System.out.println(count + " positions added to " + golden + ".");
+
+    }
+
+}
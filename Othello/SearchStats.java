@@ -0,0 +1,59 @@
+/*
+ * SearchStats.java
+ *
+ * The statistics of one search by an engine: how much work it did and how long it took.
+ */
+
+public class SearchStats {
+
+    /**
+     * Number of nodes (minimax) or playouts (MCTS) searched
+     */
+    public final long nodes;
+
+    /**
+     * Deepest completed iteration (minimax) or deepest tree node (MCTS)
+     */
+    public final int depth;
+
+    /**
+     * Time taken, in milliseconds
+     */
+    public final long millis;
+
+    /**
+     * Constructor: records the statistics
+     *
+     * @param  nodes  number of nodes or playouts searched
+     * @param  depth  the depth reached
+     * @param  millis  the time taken in milliseconds
+     */
+    public SearchStats(long nodes, int depth, long millis) {
+
+        this.nodes = nodes;
+        this.depth = depth;
+        this.millis = millis;
+
+    }
+
+    /**
+     * Gives the search speed
+     *
+     * @return the nodes searched per second
+     */
+    public long nodesPerSecond() {
+
+        return millis == 0 ? nodes * 1000 : nodes * 1000 / millis;
+
+    }
+
+    /**
+     * Gives the statistics as a line of text
+     */
+    public String toString() {
+
+        return "Nodes: " + nodes + ", depth: " + depth + ", time: " + millis + " ms, nps: " + nodesPerSecond();
+
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * SearchWorker.java
+ *
+ * A search worker process for DistributedSearch: it listens on a TCP port and searches the work units
+ * a coordinator sends it with its own AI. Several workers can run on one machine (each on its own port)
+ * or on other machines; each connection gets its own bot and transposition table.
+ *
+ * The protocol is one line of text per message:
+ *   coordinator to worker: SEARCH id position player depth alpha beta [FRESH]
+ *                          (the position as written by PositionAnalyser.formatText, without the player;
+ *                          FRESH to search from an empty transposition table, for a reproducible result)
+ *                          STOP id to end the search of that unit early (ignored if it is not being searched),
+ *                          QUIT to close the connection
+ *   worker to coordinator: RESULT id score nodes
+ *                          (the score for the player to move, a bound if it falls outside of the window)
+ *                          STOPPED id if the unit was stopped before its search finished, so it has no score
+ *                          ERROR id reason if the unit could not be searched
+ * The worker answers the SEARCH messages of a connection one at a time, in order.
+ *
+ * Usage: java SearchWorker [port] [tablebits]
+ */
+
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.*;
+
+public class SearchWorker {
+
+    /**
+     * The port workers listen on if none is given
+     */
+    public final static int DEFAULTPORT = 7878;
+
+    private final static int DEFAULTTABLEBITS = 20; // The transposition table has 2 to the power of this many slots by default
+    private final static int WARMUPSIZE = 8; // The board searched while waiting for the first coordinator
+
+    /*
+     * Listen for coordinators and serve each connection on its own thread
+     */
+    public static void main(String[] args) throws IOException {
+
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTPORT;
+        int tableBits = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULTTABLEBITS;
+
+        ServerSocket server = new ServerSocket(port);
+        System.out.println("Search worker listening on port " + port + ".");
+        WarmUp warmUp = new WarmUp(WARMUPSIZE); // Stopped by the first search, which then runs at full speed
+        warmUp.start();
+
+        while (true) {
+            Socket socket = server.accept();
+            Thread connection = new Thread(() -> serve(socket, tableBits, warmUp));
+            connection.setDaemon(true);
+            connection.start();
+        }
+
+    }
+
+    /*
+     * Read the messages of one coordinator until it quits or disconnects
+     * Searches run on their own thread, so a STOP can be read while one is running.
+     *
+     * @param  socket  the connection to the coordinator
+     * @param  tableBits  the size of the connection's transposition table
+     * @param  warmUp  the warm-up of the worker, stopped when a search comes
+     */
+    private static void serve(Socket socket, int tableBits, WarmUp warmUp) {
+
+        AI ai = new AI();
+        ai.setTableBits(tableBits);
+        ExecutorService searcher = Executors.newSingleThreadExecutor();
+        UnitState state = new UnitState(); // The unit being searched and the last one asked to stop
+
+        try {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8")));
+
+            String line = in.readLine();
+            while (line != null && !line.equals("QUIT")) {
+                String[] fields = line.split(" ");
+                if (fields[0].equals("SEARCH") && (fields.length == 7 || fields.length == 8 && fields[7].equals("FRESH"))) {
+                    warmUp.stop();
+                    searcher.execute(() -> search(ai, fields, out, state));
+                } else if (fields[0].equals("STOP") && fields.length == 2) {
+                    synchronized (state) {
+                        state.stopping = fields[1];
+                        if (fields[1].equals(state.running)) { // A late STOP must not end the next unit
+                            ai.stop();
+                        }
+                    }
+                } else {
+                    System.out.println("Unknown message: " + line);
+                }
+                line = in.readLine();
+            }
+        } catch (IOException iox) {
+            System.out.println("Connection lost: " + iox.getMessage());
+        } finally {
+            ai.stop();
+            searcher.shutdown();
+            try {
+                socket.close();
+            } catch (IOException iox) {
+                // Already closed
+            }
+        }
+
+    }
+
+    /*
+     * The unit a connection is searching and the last one asked to stop
+     * Both are read and set under the lock of the object, so a STOP either comes before its unit starts
+     * and is seen then, or comes after and stops the bot; it is never lost in between.
+     */
+    private static class UnitState {
+
+        String running; // The id of the unit being searched, null if none
+        String stopping; // The id of the last unit asked to stop
+
+    }
+
+    /*
+     * Search one work unit and send back the result, or STOPPED if it was asked to stop
+     *
+     * @param  ai  the connection's bot
+     * @param  fields  the fields of the SEARCH message
+     * @param  out  the connection to the coordinator
+     * @param  state  the unit being searched and the last one asked to stop
+     */
+    private static void search(AI ai, String[] fields, PrintWriter out, UnitState state) {
+
+        String id = fields[1];
+        String reply;
+        try {
+            PositionAnalyser.Job job = PositionAnalyser.parseText(fields[2] + " " + fields[3]);
+            int depth = Integer.parseInt(fields[4]);
+            int alpha = Integer.parseInt(fields[5]);
+            int beta = Integer.parseInt(fields[6]);
+            if (fields.length > 7) { // FRESH
+                ai.clearTable();
+            }
+            boolean started;
+            synchronized (state) {
+                started = !id.equals(state.stopping);
+                if (started) {
+                    state.running = id;
+                    ai.clearStop(); // A STOP from here on ends this search
+                }
+            }
+            if (!started) { // Stopped before it started
+                reply = "STOPPED " + id;
+            } else {
+                int score = ai.searchWindow(job.board, job.player, depth, alpha, beta);
+                synchronized (state) {
+                    reply = id.equals(state.stopping) ? "STOPPED " + id : "RESULT " + id + " " + score + " " + ai.stats().nodes;
+                }
+            }
+        } catch (IllegalArgumentException iax) {
+            reply = "ERROR " + id + " " + iax.getMessage();
+        }
+        synchronized (state) {
+            state.running = null;
+        }
+
+        out.println(reply);
+        out.flush();
+
+    }
+
+}
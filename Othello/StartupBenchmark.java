@@ -0,0 +1,36 @@
+/*
+ * StartupBenchmark.java
+ *
+ * Measures how long a new process takes to find its first best move from the starting position.
+ * It reports the time from main to the move: loading the engine's classes, the first search, and whatever
+ * the JIT compiler manages during it. build.sh bench runs it on the engine jar, with the AppCDS archive and as
+ * a native image, and times each whole process, so the startup of the JVM is counted too.
+ *
+ * Usage: java StartupBenchmark [depth]
+ */
+
+public class StartupBenchmark {
+
+    private final static int DEFAULTDEPTH = 6; // Depth of the search if none is given
+    private final static long SEED = 1; // Seed of the deterministic search, so every run finds the same move
+
+    /*
+     * Search the starting position once and report the times
+     */
+    public static void main(String[] args) {
+
+        long mainStart = System.nanoTime();
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTDEPTH;
+
+        Position start = Position.start();
+        AI ai = new AI();
+        ai.setDeterministic(SEED);
+        int[] move = ai.search(start.toBoard(), start.player(), depth);
+
+        long inMain = (System.nanoTime() - mainStart) / 1000000;
+        System.out.println("First move " + SearchAnalysis.moveName(move) + " (score " + ai.score() + ", depth " + depth + ", "
+                + ai.stats().nodes + " nodes) in " + inMain + " ms.");
+
+    }
+
+}
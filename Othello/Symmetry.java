@@ -0,0 +1,166 @@
+/*
+ * Symmetry.java
+ *
+ * The eight symmetries of the 8x8 board (the rotations and reflections) on bitboards (see Bitboard).
+ * A position and its reflections and rotations are worth the same, so caches store every position
+ * under its canonical form: the one of its eight transforms with the smallest bitboards.
+ * A move found in the canonical form is mapped back to the real board with the inverse transform.
+ * Each transform is made of up to three reflections: mirror the columns, flip the rows, then swap rows and columns.
+ */
+
+public class Symmetry {
+
+    /**
+     * Number of symmetries of the board
+     */
+    public final static int NUMTRANSFORM = 8;
+
+    private final static int MIRROR = 1; // Transform bit: reverse the columns
+    private final static int FLIP = 2; // Transform bit: reverse the rows
+    private final static int TRANSPOSE = 4; // Transform bit: swap the rows and the columns
+
+    /*
+     * Reverse the order of the columns
+     *
+     * @param  pieces  the pieces
+     * @return the mirrored pieces
+     */
+    public static long mirror(long pieces) {
+
+        pieces = ((pieces >>> 1) & 0x5555555555555555L) | ((pieces & 0x5555555555555555L) << 1);
+        pieces = ((pieces >>> 2) & 0x3333333333333333L) | ((pieces & 0x3333333333333333L) << 2);
+        pieces = ((pieces >>> 4) & 0x0f0f0f0f0f0f0f0fL) | ((pieces & 0x0f0f0f0f0f0f0f0fL) << 4);
+        return pieces;
+
+    }
+
+    /*
+     * Reverse the order of the rows
+     *
+     * @param  pieces  the pieces
+     * @return the flipped pieces
+     */
+    public static long flip(long pieces) {
+
+        return Long.reverseBytes(pieces); // One row is one byte
+
+    }
+
+    /*
+     * Swap the rows and the columns: reflect the board on the diagonal through the first and last slots
+     *
+     * @param  pieces  the pieces
+     * @return the transposed pieces
+     */
+    public static long transpose(long pieces) {
+
+        long t = 0x0f0f0f0f00000000L & (pieces ^ (pieces << 28)); // Swap the 4x4 blocks off the diagonal
+        pieces ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (pieces ^ (pieces << 14)); // Then the 2x2 blocks
+        pieces ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (pieces ^ (pieces << 7)); // Then the single slots
+        pieces ^= t ^ (t >>> 7);
+        return pieces;
+
+    }
+
+    /*
+     * Apply one of the eight symmetries
+     *
+     * @param  pieces  the pieces
+     * @param  transform  the symmetry, 0 (none) to 7
+     * @return the transformed pieces
+     */
+    public static long transform(long pieces, int transform) {
+
+        if ((transform & MIRROR) != 0) {
+            pieces = mirror(pieces);
+        }
+        if ((transform & FLIP) != 0) {
+            pieces = flip(pieces);
+        }
+        if ((transform & TRANSPOSE) != 0) {
+            pieces = transpose(pieces);
+        }
+        return pieces;
+
+    }
+
+    /*
+     * Undo one of the eight symmetries: the same reflections in the opposite order
+     *
+     * @param  pieces  the transformed pieces
+     * @param  transform  the symmetry that was applied, 0 (none) to 7
+     * @return the pieces before the transform
+     */
+    public static long inverse(long pieces, int transform) {
+
+        if ((transform & TRANSPOSE) != 0) {
+            pieces = transpose(pieces);
+        }
+        if ((transform & FLIP) != 0) {
+            pieces = flip(pieces);
+        }
+        if ((transform & MIRROR) != 0) {
+            pieces = mirror(pieces);
+        }
+        return pieces;
+
+    }
+
+    /*
+     * Find the canonical form of a position: the transform giving the smallest bitboards
+     * The player to move's pieces are compared first, then the other player's.
+     *
+     * @param  own  the pieces of the player to move
+     * @param  opp  the pieces of the other player
+     * @return the transform (0 to 7) that turns the position into its canonical form
+     */
+    public static int canonical(long own, long opp) {
+
+        int best = 0;
+        long bestOwn = own;
+        long bestOpp = opp;
+
+        for (int t = 1; t < NUMTRANSFORM; t++) {
+            long newOwn = transform(own, t);
+            long newOpp = transform(opp, t);
+            int compare = Long.compareUnsigned(newOwn, bestOwn);
+            if (compare < 0 || (compare == 0 && Long.compareUnsigned(newOpp, bestOpp) < 0)) {
+                best = t;
+                bestOwn = newOwn;
+                bestOpp = newOpp;
+            }
+        }
+
+        return best;
+
+    }
+
+    /*
+     * Move a slot with one of the eight symmetries
+     *
+     * @param  square  the slot (row * 8 + col)
+     * @param  transform  the symmetry, 0 (none) to 7
+     * @return the slot it is moved to
+     */
+    public static int transformSquare(int square, int transform) {
+
+        return Long.numberOfTrailingZeros(transform(1L << square, transform));
+
+    }
+
+    /*
+     * Move a slot back through one of the eight symmetries
+     *
+     * @param  square  the transformed slot (row * 8 + col)
+     * @param  transform  the symmetry that was applied, 0 (none) to 7
+     * @return the slot before the transform
+     */
+    public static int inverseSquare(int square, int transform) {
+
+        return Long.numberOfTrailingZeros(inverse(1L << square, transform));
+
+    }
+
+}
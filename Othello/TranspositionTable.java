@@ -0,0 +1,177 @@
+/*
+ * TranspositionTable.java
+ *
+ * A fixed-size hash table of search results, so a position reached again (through another move order,
+ * a later search or pondering) does not have to be searched again.
+ * Positions are stored as two longs from the point of view of the player to move,
+ * which is all the evaluation depends on: the two bitboards on boards of up to 64 slots,
+ * two independent hashes of the board on bigger ones.
+ * Every position hashes to a bucket of two slots. The first slot only gives way to a deeper result
+ * or to a result of a newer search, so the deep results of a finished search survive
+ * while the rest of the same search churns through the second slot.
+ */
+
+public class TranspositionTable {
+
+    /**
+     * The stored score is exact
+     */
+    public final static int EXACT = 0;
+
+    /**
+     * The stored score is a lower bound (the search failed high)
+     */
+    public final static int LOWER = 1;
+
+    /**
+     * The stored score is an upper bound (the search failed low)
+     */
+    public final static int UPPER = 2;
+
+    private final long[] owns; // The pieces of the player to move, for each slot
+    private final long[] opps; // The pieces of the other player, for each slot
+    private final int[] scores; // The score of each slot
+    private final byte[] depths; // The depth each slot was searched to
+    private final byte[] flags; // Whether each score is exact or a bound
+    private final short[] moves; // The best move of each slot (an index into a packed board), -1 if none
+    private final byte[] ages; // The search each slot was stored by
+    private byte age; // The current search
+    private final int mask; // Picks the first slot of a bucket out of a hash
+
+    /**
+     * Constructor: creates an empty table
+     *
+     * @param  bits  the table has 2 to the power of bits slots (at least 1)
+     */
+    public TranspositionTable(int bits) {
+
+        int size = 1 << Math.max(1, bits);
+        owns = new long[size];
+        opps = new long[size];
+        scores = new int[size];
+        depths = new byte[size];
+        flags = new byte[size];
+        moves = new short[size];
+        ages = new byte[size];
+        mask = size - 2;
+
+    }
+
+    /**
+     * Find the slot of a position
+     *
+     * @param  own  the pieces of the player to move
+     * @param  opp  the pieces of the other player
+     * @return the slot, or -1 if the position is not stored
+     */
+    public int find(long own, long opp) {
+
+        int index = index(own, opp);
+        if (owns[index] == own && opps[index] == opp) {
+            return index;
+        }
+        if (owns[index + 1] == own && opps[index + 1] == opp) {
+            return index + 1;
+        }
+        return -1;
+
+    }
+
+    /**
+     * Store a search result in its bucket
+     * It replaces the same position if that is stored, else the first slot if it is deeper or newer, else the second slot
+     *
+     * @param  own  the pieces of the player to move
+     * @param  opp  the pieces of the other player
+     * @param  depth  the depth the position was searched to
+     * @param  score  the score for the player to move
+     * @param  flag  EXACT, LOWER or UPPER
+     * @param  move  the best move (an index into a packed board), -1 if none
+     */
+    public void store(long own, long opp, int depth, int score, int flag, int move) {
+
+        int index = index(own, opp);
+        if (!(owns[index] == own && opps[index] == opp) && (owns[index + 1] == own && opps[index + 1] == opp || (depth <= depths[index] && ages[index] == age))) {
+            index++;
+        }
+        owns[index] = own;
+        opps[index] = opp;
+        scores[index] = score;
+        depths[index] = (byte) depth;
+        flags[index] = (byte) flag;
+        moves[index] = (short) move;
+        ages[index] = age;
+
+    }
+
+    /**
+     * Start a new search: results of earlier searches can now be replaced by shallower ones
+     */
+    public void newSearch() {
+
+        age++;
+
+    }
+
+    /**
+     * Gives the score stored in a slot
+     */
+    public int score(int index) {
+
+        return scores[index];
+
+    }
+
+    /**
+     * Gives the depth stored in a slot
+     */
+    public int depth(int index) {
+
+        return depths[index];
+
+    }
+
+    /**
+     * Gives the flag (EXACT, LOWER or UPPER) stored in a slot
+     */
+    public int flag(int index) {
+
+        return flags[index];
+
+    }
+
+    /**
+     * Gives the best move (an index into a packed board) stored in a slot, -1 if none
+     */
+    public int move(int index) {
+
+        return moves[index];
+
+    }
+
+    /**
+     * Remove every stored position
+     */
+    public void clear() {
+
+        java.util.Arrays.fill(owns, 0);
+        java.util.Arrays.fill(opps, 0);
+
+    }
+
+    /*
+     * Hash a position to its bucket
+     *
+     * @param  own  the pieces of the player to move
+     * @param  opp  the pieces of the other player
+     * @return the first slot of the bucket
+     */
+    private int index(long own, long opp) {
+
+        long hash = own * 0x9e3779b97f4a7c15L ^ Long.rotateLeft(opp * 0xc2b2ae3d27d4eb4fL, 31);
+        hash ^= hash >>> 29;
+        return (int) hash & mask;
+
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * WarmUp.java
+ *
+ * Runs the search in the background at startup, so the JIT compiler has compiled the move generation, the
+ * search and the evaluation before the first real move is asked for, instead of during it.
+ * Every round searches the same positions, reached by random play with AI.boardAfterMove from a fixed seed,
+ * in deterministic mode, and measures the nodes searched per second. Once a round is no faster than the best
+ * round so far (within STEADY) for STEADYROUNDS rounds in a row, the code is taken as compiled, the speed
+ * reached is reported and the warm-up ends. It also ends when stopped, so it never slows down a real search.
+ */
+
+import java.util.*;
+
+public class WarmUp {
+
+    private final static int NUMPLAYER = 2; // Number of players
+
+    private final static int POSITIONS = 16; // Positions searched every round
+    private final static int DEPTH = 4; // Depth of every search
+    private final static int TABLEBITS = 14; // The transposition table of the warm-up has 2 to the power of this many slots
+    private final static long SEED = 1; // Seed of the random play and of the tie-breaking
+    private final static double STEADY = 0.03; // How much faster than the best round a round can be and still be steady
+    private final static int STEADYROUNDS = 2; // Steady rounds in a row before the speed is taken as reached
+    private final static int MAXROUNDS = 50; // Rounds before giving up on a steady speed
+    private final static long MAXMILLIS = 10000; // Milliseconds before giving up on a steady speed
+
+    private final int size; // The number of rows and columns of the positions searched
+    private final AI ai; // The engine warmed up; the code compiled is shared with every other AI
+    private volatile boolean stopped; // Set by stop() to end the warm-up
+    private volatile long nodesPerSecond; // The speed of the best round so far
+    private volatile boolean steady; // Whether the speed stopped getting better
+
+    /**
+     * Constructor: nothing runs until started
+     *
+     * @param  size  the number of rows and columns of the board, as in the games that follow
+     */
+    public WarmUp(int size) {
+
+        this.size = size;
+        ai = new AI();
+        ai.setTableBits(TABLEBITS);
+        ai.setDeterministic(SEED);
+
+    }
+
+    /**
+     * Start the rounds on a background thread of the lowest priority
+     */
+    public void start() {
+
+        Thread thread = new Thread(this::run, "WarmUp");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+
+    }
+
+    /**
+     * End the warm-up, in the middle of a search if need be; a real search can start at once
+     */
+    public void stop() {
+
+        stopped = true;
+        ai.stop();
+
+    }
+
+    /**
+     * Gives the nodes searched per second in the fastest round so far
+     *
+     * @return the nodes per second, 0 before the first round ends
+     */
+    public long nodesPerSecond() {
+
+        return nodesPerSecond;
+
+    }
+
+    /**
+     * Gives whether the search has reached its steady speed
+     *
+     * @return true once the rounds stopped getting faster
+     */
+    public boolean isSteady() {
+
+        return steady;
+
+    }
+
+    /*
+     * Search the positions round after round until the speed is steady, or until stopped or out of time
+     */
+    private void run() {
+
+        long start = System.currentTimeMillis();
+        long firstRound = 0;
+        int steadyRounds = 0;
+        int round = 0;
+
+        while (!stopped && round < MAXROUNDS && System.currentTimeMillis() - start < MAXMILLIS) {
+            long roundStart = System.nanoTime();
+            long nodes = 0;
+            for (int[][] board : positions()) {
+                if (stopped) {
+                    break;
+                }
+                ai.search(board, 0, DEPTH); // An even number of moves was played, so the first player is to move
+                nodes += ai.stats().nodes;
+            }
+            if (stopped) {
+                break;
+            }
+            round++;
+
+            long speed = nodes * 1000000000L / Math.max(1, System.nanoTime() - roundStart);
+            if (firstRound == 0) {
+                firstRound = speed;
+            }
+            if (speed <= nodesPerSecond * (1 + STEADY)) {
+                steadyRounds++;
+            } else {
+                steadyRounds = 0;
+            }
+            nodesPerSecond = Math.max(nodesPerSecond, speed);
+            if (steadyRounds == STEADYROUNDS) {
+                steady = true;
+                System.out.println("Search warmed up: " + nodesPerSecond + " nodes/s after " + round + " rounds ("
+                        + (System.currentTimeMillis() - start) + " ms); the first round ran at " + firstRound + " nodes/s.");
+                return;
+            }
+        }
+        System.out.println("Search warm-up " + (stopped ? "stopped" : "ended") + " after " + round + " rounds ("
+                + (System.currentTimeMillis() - start) + " ms) at " + nodesPerSecond + " nodes/s.");
+
+    }
+
+    /*
+     * Play random games from the starting position and take one position out of each
+     * The positions are made again every round, so the move generation is warmed up along with the search.
+     *
+     * @return the positions, all with the first player to move
+     */
+    private ArrayList < int[][] > positions() {
+
+        Random random = new Random(SEED);
+        ArrayList < int[][] > positions = new ArrayList < int[][] > ();
+        while (positions.size() < POSITIONS) {
+            int[][] board = PositionAnalyser.startingPosition(size).board;
+            int plies = NUMPLAYER * random.nextInt((size * size - 4) / NUMPLAYER - DEPTH);
+            for (int ply = 0; ply < plies; ply++) {
+                ArrayList < int[] > moves = AI.allPossibleMoves(board, ply % NUMPLAYER);
+                board = AI.boardAfterMove(board, ply % NUMPLAYER, moves.get(random.nextInt(moves.size())));
+            }
+            positions.add(board);
+        }
+        return positions;
+
+    }
+
+}
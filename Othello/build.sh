@@ -0,0 +1,161 @@
+#!/bin/bash
+#
+# build.sh
+#
+# Builds the game and the headless engine without a build tool: only a JDK (11 or later) is needed,
+# and GraalVM's native-image for the native executables.
+#
+#   ./build.sh jar      compile everything into build/ and package
+#                         build/othello.jar         the game (java -jar build/othello.jar, with config.txt in the working directory)
+#                         build/othello-engine.jar  the engine without the GUI: PositionAnalyser (the main class),
+#                                                   SearchWorker, SearchRegression, ProbCutCalibration and StartupBenchmark
+#   ./build.sh cds      the jars, then an AppCDS archive of the classes a short analysis job loads,
+#                       build/othello-engine.jsa; use it with java -XX:SharedArchiveFile=build/othello-engine.jsa
+#   ./build.sh native   the jars and the archive, then native executables of the engine with native-image (see native-image/):
+#                       build/othello-analyser, build/othello-worker and build/othello-startup
+#                       UNTESTED: no native-image was at hand when this target was written, so it has never been run;
+#                       the settings in native-image/ may need fixing on a first build
+#   ./build.sh bench    time to the first best move from the starting position (see StartupBenchmark),
+#                       for the plain jar, the AppCDS archive and the native executable, whichever are built
+#   ./build.sh distributed
+#                       start DISTWORKERS SearchWorker processes on this machine, check the golden positions
+#                       in one process and then on the workers (see SearchRegression -workers), and stop the workers
+#   ./build.sh clean    remove build/
+#
+# With no target, builds the jars and the AppCDS archive.
+
+set -e
+cd "$(dirname "$0")"
+
+BUILD=build
+RELEASE=11 # The oldest Java the jars run on
+BENCHRUNS=5 # Runs of each variant in the benchmark
+BENCHDEPTH=6 # Depth of the benchmark search
+DISTWORKERS=2 # Worker processes of the distributed check
+DISTPORT=7901 # Port of the first worker; the others take the next ones
+DISTTABLEBITS=16 # Transposition table of every worker, kept small as they all share this machine
+
+# The classes of the engine jar: the search and its command-line tools, nothing that needs a display
+ENGINE_SOURCES="AI.java Bitboard.java DistributedSearch.java Engine.java MCTS.java PackedBoard.java Position.java
+    PositionAnalyser.java ProbCutCalibration.java SearchAnalysis.java SearchRegression.java SearchStats.java
+    SearchWorker.java StartupBenchmark.java Symmetry.java TranspositionTable.java WarmUp.java"
+
+build_jars() {
+
+    # An AppCDS archive only works with the jar it was made from
+    rm -rf "$BUILD/classes" "$BUILD/engine" "$BUILD/othello-engine.jsa"
+    mkdir -p "$BUILD/classes" "$BUILD/engine/META-INF/native-image/othello/engine"
+
+    # The whole game; the images and the Multi-ProbCut parameters are read from the classpath
+    javac --release $RELEASE -encoding UTF-8 -d "$BUILD/classes" *.java
+    cp -r images probcut.txt "$BUILD/classes/"
+    jar --create --file "$BUILD/othello.jar" --main-class OthelloGUI -C "$BUILD/classes" .
+
+    # The engine on its own, compiled apart so nothing of the GUI can creep in
+    javac --release $RELEASE -encoding UTF-8 -d "$BUILD/engine" $ENGINE_SOURCES
+    cp probcut.txt "$BUILD/engine/"
+    cp native-image/* "$BUILD/engine/META-INF/native-image/othello/engine/"
+    jar --create --file "$BUILD/othello-engine.jar" --main-class PositionAnalyser -C "$BUILD/engine" .
+
+    echo "Built $BUILD/othello.jar and $BUILD/othello-engine.jar."
+
+}
+
+build_cds() {
+
+    # Record the classes loaded by a short analysis of the golden positions; the archive is written when the JVM exits
+    grep -v '^#' golden.txt | cut -d ' ' -f 1,2 \
+        | java -XX:ArchiveClassesAtExit="$BUILD/othello-engine.jsa" -cp "$BUILD/othello-engine.jar" PositionAnalyser -depth 4 -threads 2 - > /dev/null 2>&1
+    echo "Built $BUILD/othello-engine.jsa."
+
+}
+
+build_native() {
+
+    if ! command -v native-image > /dev/null; then
+        echo "native-image not found: install GraalVM and put its bin directory on the PATH."
+        exit 1
+    fi
+    native-image -cp "$BUILD/othello-engine.jar" PositionAnalyser -o "$BUILD/othello-analyser"
+    native-image -cp "$BUILD/othello-engine.jar" SearchWorker -o "$BUILD/othello-worker"
+    native-image -cp "$BUILD/othello-engine.jar" StartupBenchmark -o "$BUILD/othello-startup"
+
+}
+
+# Run a command BENCHRUNS times and print the fastest and the average wall time
+time_runs() {
+
+    local name="$1"
+    shift
+    local best=0
+    local total=0
+    for run in $(seq $BENCHRUNS); do
+        local start=$(date +%s%N)
+        "$@" > "$BUILD/bench.out"
+        local millis=$((($(date +%s%N) - start) / 1000000))
+        total=$((total + millis))
+        if [ $best -eq 0 ] || [ $millis -lt $best ]; then
+            best=$millis
+        fi
+    done
+    printf "%-14s fastest %5d ms, average %5d ms   %s\n" "$name" $best $((total / BENCHRUNS)) "$(cat "$BUILD/bench.out")"
+
+}
+
+bench() {
+
+    if [ ! -f "$BUILD/othello-engine.jar" ]; then
+        build_jars
+    fi
+    echo "Time to the first best move from the starting position, depth $BENCHDEPTH, $BENCHRUNS runs each:"
+    time_runs "jar" java -cp "$BUILD/othello-engine.jar" StartupBenchmark $BENCHDEPTH
+    if [ -f "$BUILD/othello-engine.jsa" ]; then
+        time_runs "jar + AppCDS" java -XX:SharedArchiveFile="$BUILD/othello-engine.jsa" -cp "$BUILD/othello-engine.jar" StartupBenchmark $BENCHDEPTH
+    fi
+    if [ -x "$BUILD/othello-startup" ]; then
+        time_runs "native" "$BUILD/othello-startup" $BENCHDEPTH
+    fi
+    rm -f "$BUILD/bench.out"
+
+}
+
+distributed() {
+
+    if [ ! -f "$BUILD/othello-engine.jar" ]; then
+        build_jars
+    fi
+    local workers=""
+    local pids=""
+    for n in $(seq 0 $((DISTWORKERS - 1))); do
+        local port=$((DISTPORT + n))
+        java -cp "$BUILD/othello-engine.jar" SearchWorker $port $DISTTABLEBITS > "$BUILD/worker-$port.log" 2>&1 &
+        pids="$pids $!"
+        workers="$workers${workers:+,}localhost:$port"
+    done
+    trap "kill$pids 2> /dev/null" EXIT
+
+    # Wait for every worker to listen
+    for n in $(seq 0 $((DISTWORKERS - 1))); do
+        local port=$((DISTPORT + n))
+        until grep -q listening "$BUILD/worker-$port.log" 2> /dev/null; do
+            sleep 0.1
+        done
+    done
+
+    echo "In one process:"
+    java -cp "$BUILD/othello-engine.jar" SearchRegression golden.txt
+    echo "On $DISTWORKERS workers ($workers):"
+    java -cp "$BUILD/othello-engine.jar" SearchRegression -workers "$workers" golden.txt
+
+}
+
+case "${1:-all}" in
+    jar) build_jars ;;
+    cds) build_jars; build_cds ;;
+    native) build_jars; build_cds; build_native ;;
+    bench) bench ;;
+    distributed) distributed ;;
+    clean) rm -rf "$BUILD" ;;
+    all) build_jars; build_cds ;;
+    *) echo "Usage: ./build.sh [jar | cds | native | bench | distributed | clean] (native is untested)"; exit 1 ;;
+esac